@@ -0,0 +1,114 @@
+package point.closestpair;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Follows points with KineticClosestPair for 100 time units, and after
+ * every quarter compares its distance with the smallest one over all
+ * pairs, found from where the points would be if they went through the
+ * walls instead of bouncing off them. The inputs are the degenerate ones
+ * that broke the certificates: square lattices of 3 to 7 points a side
+ *   - all moving to the right at the same speed,
+ *   - with velocities of small integers, so that points meet and line
+ *     up many at a time,
+ *   - with random velocities,
+ * and points evenly spaced on a circle, all moving along it.
+ *
+ * Certificates that keep failing make advance() never return, so every
+ * input is followed on a worker thread, and one that takes longer than
+ * a minute is reported as a livelock.
+ *
+ * Usage: java point.closestpair.KineticClosestPairCheck [inputs]
+ */
+public class KineticClosestPairCheck {
+
+    // the longest an input may take, in seconds
+    private static final long LIMIT = 60;
+
+    public static void main(String[] args) throws InterruptedException {
+        int inputs = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        Random random = new Random(1);
+        ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "check");
+            t.setDaemon(true);
+            return t;
+        });
+        int failures = 0;
+        long events = 0, rebuilds = 0;
+
+        for (int input = 0; input < inputs; input++) {
+            int side = 3 + random.nextInt(5), n = side * side, kind = input % 4;
+            double size = (kind == 3) ? 100 : 10 * side;
+            double[] x = new double[n], y = new double[n], vx = new double[n], vy = new double[n];
+            for (int i = 0; i < n; i++) {
+                double angle = 2 * Math.PI * i / n;
+                x[i] = (kind == 3) ? 50 + 20 * Math.cos(angle) : 10 * (i % side) + 5;
+                y[i] = (kind == 3) ? 50 + 20 * Math.sin(angle) : 10 * (i / side) + 5;
+                vx[i] = (kind == 0) ? 1 : (kind == 1) ? random.nextInt(5) - 2
+                        : (kind == 2) ? random.nextGaussian() : -Math.sin(angle);
+                vy[i] = (kind == 0) ? 0 : (kind == 1) ? random.nextInt(5) - 2
+                        : (kind == 2) ? random.nextGaussian() : Math.cos(angle);
+            }
+            KineticClosestPair kinetic = new KineticClosestPair(x, y, vx, vy, 0, 0, size, size);
+
+            String name = "input " + input + " (" + side + " x " + side + ", kind " + kind + ")";
+            Future<String> result = worker.submit(() -> follow(kinetic, x, y, vx, vy, size));
+            try {
+                String failure = result.get(LIMIT, TimeUnit.SECONDS);
+                if (failure != null && failures++ < 10)
+                    System.out.println(name + ": " + failure);
+            } catch (TimeoutException e) {
+                System.out.println(name + ": livelock at t = " + kinetic.time());
+                System.exit(1);
+            } catch (ExecutionException e) {
+                System.out.println(name + ": " + e.getCause());
+                failures++;
+            }
+            events += kinetic.numOfEvents();
+            rebuilds += kinetic.numOfRebuilds();
+        }
+
+        System.out.println(failures == 0 ? "ok, " + inputs + " inputs, " + events + " events, "
+                + rebuilds + " rebuilds" : failures + " failures");
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    // advances the points in steps of a quarter, and returns the first
+    // wrong distance, or null if there is none
+    private static String follow(KineticClosestPair kinetic, double[] x, double[] y,
+                                 double[] vx, double[] vy, double size) {
+        int n = x.length;
+        for (int step = 1; step <= 400; step++) {
+            double t = step / 4.0;
+            kinetic.advance(t);
+
+            double expected = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    double dx = reflect(x[i] + vx[i] * t, size) - reflect(x[j] + vx[j] * t, size);
+                    double dy = reflect(y[i] + vy[i] * t, size) - reflect(y[j] + vy[j] * t, size);
+                    expected = Math.min(expected, Math.hypot(dx, dy));
+                }
+            }
+            if (Math.abs(kinetic.distance() - expected) > 1e-6 * (1 + expected))
+                return "t = " + t + ": " + kinetic.distance() + ", expected " + expected;
+        }
+        return null;
+    }
+
+    // the position between 0 and size of a point that would be at c if
+    // it went through the walls
+    private static double reflect(double c, double size) {
+        double s = c % (2 * size);
+        if (s < 0)
+            s += 2 * size;
+        return (s <= size) ? s : 2 * size - s;
+    }
+}
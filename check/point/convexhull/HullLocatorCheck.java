@@ -0,0 +1,84 @@
+package point.convexhull;
+
+import point.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares HullLocator with a test of the query against every edge of
+ * the hull, over all the integer queries around random hulls of a few
+ * points on a 9 by 9 grid. A third of the hulls have at most three
+ * points, so hulls of a single vertex and of a segment come up often;
+ * a single vertex was once reported to have every query on it.
+ *
+ * Usage: java point.convexhull.HullLocatorCheck [hulls]
+ */
+public class HullLocatorCheck {
+
+    public static void main(String[] args) {
+        int hulls = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        Random random = new Random(1);
+        int failures = 0;
+
+        for (int run = 0; run < hulls; run++) {
+            int n = 1 + random.nextInt((run % 3 == 0) ? 3 : 30);
+            double[] x = new double[n], y = new double[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = random.nextInt(9);
+                y[i] = random.nextInt(9);
+            }
+            List<Point> hull = new ArrayList<>();
+            for (int i : MonotoneChain.hull(x, y))
+                hull.add(new Point(x[i], y[i]));
+            HullLocator locator = new HullLocator(hull);
+
+            for (int qx = -1; qx <= 9; qx++) {
+                for (int qy = -1; qy <= 9; qy++) {
+                    byte expected = locate(hull, qx, qy);
+                    byte actual = locator.locate(qx, qy);
+                    if (actual != expected && failures++ < 10)
+                        System.out.println("hull " + hull + ", query (" + qx + ", " + qy + "): "
+                                + actual + ", expected " + expected);
+                }
+            }
+        }
+
+        System.out.println(failures == 0 ? "ok, " + hulls + " hulls" : failures + " failures");
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    // the side of every edge of the hull, without its repeated vertices
+    private static byte locate(List<Point> hull, double qx, double qy) {
+        List<Point> v = new ArrayList<>();
+        for (Point p : hull)
+            if (v.isEmpty() || !(p.equals(v.get(v.size() - 1)) || p.equals(v.get(0))))
+                v.add(p);
+
+        if (v.size() == 1)
+            return (qx == v.get(0).getX() && qy == v.get(0).getY()) ? HullLocator.ON : HullLocator.OUTSIDE;
+        if (v.size() == 2) {
+            Point a = v.get(0), b = v.get(1);
+            double ex = b.getX() - a.getX(), ey = b.getY() - a.getY();
+            double dx = qx - a.getX(), dy = qy - a.getY();
+            double t = dx * ex + dy * ey;
+            boolean on = ex * dy - ey * dx == 0 && t >= 0 && t <= ex * ex + ey * ey;
+            return on ? HullLocator.ON : HullLocator.OUTSIDE;
+        }
+
+        int left = 0, right = 0;
+        for (int i = 0; i < v.size(); i++) {
+            Point a = v.get(i), b = v.get((i + 1) % v.size());
+            double side = (b.getX() - a.getX()) * (qy - a.getY()) - (b.getY() - a.getY()) * (qx - a.getX());
+            if (side > 0)
+                left++;
+            else if (side < 0)
+                right++;
+        }
+        if (left > 0 && right > 0)
+            return HullLocator.OUTSIDE;
+        return (left == v.size() || right == v.size()) ? HullLocator.INSIDE : HullLocator.ON;
+    }
+}
@@ -0,0 +1,55 @@
+package point;
+
+/**
+ * A merge sort of indices by primitive keys, such as the coordinates
+ * of points. It sorts millions of indices without boxing them to use
+ * a comparator.
+ */
+public final class IndexSort {
+
+    private IndexSort() {
+    }
+
+    /**
+     * Returns the indices 0 to n - 1 sorted by the keys k1, with ties
+     * broken by the keys k2. The sort is stable.
+     *
+     * @param n  the number of indices
+     * @param k1 the primary keys
+     * @param k2 the secondary keys
+     * @return the sorted indices
+     */
+    public static int[] sort(int n, double[] k1, double[] k2) {
+        int[] a = new int[n];
+        int[] b = new int[n];
+        for (int i = 0; i < n; i++)
+            a[i] = i;
+
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    int p = a[i], q = a[j];
+                    if (k1[q] < k1[p] || (k1[q] == k1[p] && k2[q] < k2[p])) {
+                        b[k++] = q;
+                        j++;
+                    } else {
+                        b[k++] = p;
+                        i++;
+                    }
+                }
+                while (i < mid)
+                    b[k++] = a[i++];
+                while (j < hi)
+                    b[k++] = a[j++];
+            }
+
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+
+        return a;
+    }
+}
@@ -0,0 +1,70 @@
+package point;
+
+/**
+ * The metrics that distances between points can be measured in.
+ *
+ * Closest pair searches compare distances far more often than they
+ * report them, so every metric has a compared value that is in the same
+ * order as the distance but cheaper to find: the squared distance for
+ * the Euclidean metric, so that the square root is only taken for the
+ * distance that is reported, and the distance itself for the others.
+ * The engines switch on the metric outside of their inner loops, and
+ * each loop is written out for its metric.
+ */
+public enum Metric {
+
+    EUCLIDEAN("Euclidean"),
+    MANHATTAN("Manhattan"),
+    CHEBYSHEV("Chebyshev");
+
+    private final String name;
+
+    Metric(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the value compared for two points that are dx apart on x
+     * and dy apart on y.
+     *
+     * @param dx the difference on x
+     * @param dy the difference on y
+     * @return the squared distance for EUCLIDEAN; the distance otherwise
+     */
+    public double compared(double dx, double dy) {
+        switch (this) {
+            case MANHATTAN:
+                return Math.abs(dx) + Math.abs(dy);
+            case CHEBYSHEV:
+                return Math.max(Math.abs(dx), Math.abs(dy));
+            default:
+                return dx * dx + dy * dy;
+        }
+    }
+
+    /**
+     * Returns the distance of which the given value is the compared one.
+     *
+     * @param compared the compared value
+     * @return the distance
+     */
+    public double toDistance(double compared) {
+        return (this == EUCLIDEAN) ? Math.sqrt(compared) : compared;
+    }
+
+    /**
+     * Returns the distance between the two given points.
+     *
+     * @param p1 point 1
+     * @param p2 point 2
+     * @return the distance
+     */
+    public double distance(Point p1, Point p2) {
+        return toDistance(compared(p1.getX() - p2.getX(), p1.getY() - p2.getY()));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
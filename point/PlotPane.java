@@ -1,11 +1,30 @@
 package point;
 
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Line;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by Z on 09.05.
@@ -21,15 +40,54 @@ import javafx.scene.shape.Line;
  * their representation in circles, which makes them more realistic
  * to points on a graph. It provides some basic functions for
  * plotting such as adding and removing points.
+ *
+ * Points live in world coordinates. The pane shows them through a
+ * viewport (a scale and an offset) that the user can zoom with the
+ * scroll wheel and pan by dragging with the middle button. Only the
+ * circles inside the viewport are kept in the scene graph, and when
+ * too many of them would be visible at once, the points are drawn as
+ * a density map of screen-sized bins instead. Both are found in a
+ * quadtree of the circles, so they cost no more than what is on screen,
+ * and both are brought up to date in the next layout when a point moves.
  */
 public class PlotPane extends Pane {
 
+    // the radius of a circle on screen, regardless of the zoom level
+    private static final double RADIUS = 5;
+
+    // the side length in pixels of a bin in the density map
+    private static final int BIN_SIZE = 4;
+
+    // the shades of the bins, from the lightest to the darkest
+    private static final Color[] SHADES = new Color[33];
+    static {
+        for (int i = 0; i < SHADES.length; i++)
+            SHADES[i] = Color.DARKSLATEGRAY.deriveColor(0, 1, 1, 0.2 + 0.8 * i / (SHADES.length - 1));
+    }
+
     // a list of points plotted
     protected ObservableList<Point> points;
 
     // a list of circles that represent the points on the plane
     protected ObservableList<Circle> circles;
 
+    // the index of every circle in circles, so that the point of a
+    // circle under the mouse is found without searching the list
+    private final Map<Circle, Integer> indexOfCircle = new IdentityHashMap<>();
+
+    // the circles by their position in world coordinates
+    private final QuadTree index = new QuadTree();
+
+    // keeps a circle in its place in the index when it moves, and has
+    // the viewport refreshed in the next layout
+    private final ChangeListener<Number> moved = (o, was, now) -> {
+        Circle c = (Circle) ((ReadOnlyProperty<?>) o).getBean();
+        boolean isX = o == c.centerXProperty();
+        index.move(c, isX ? was.doubleValue() : c.getCenterX(), isX ? c.getCenterY() : was.doubleValue(),
+                c.getCenterX(), c.getCenterY());
+        refreshLater();
+    };
+
     // the number of points present on the pane
     private int numPoints;
 
@@ -38,6 +96,30 @@ public class PlotPane extends Pane {
     private Line yAxis;
     private boolean axesVisible;
 
+    // the world-to-screen transform: screen = (world + pan) * zoom
+    private final Scale zoom = new Scale(1, 1);
+    private final Translate pan = new Translate(0, 0);
+
+    // plot holds everything drawn in world coordinates: shapes added
+    // by subclasses and, above them, the circles inside the viewport
+    private final Group plot = new Group();
+    private final Group shapes = new Group();
+    private final Group dots = new Group();
+
+    // the density map drawn in place of the circles when zoomed out
+    private final Canvas density = new Canvas();
+
+    // the maximum number of circles drawn before switching to the density map
+    private int detailLimit = 2000;
+    private boolean densityShown;
+
+    // whether the viewport is to be refreshed in the next layout
+    private boolean stale;
+
+    // the screen position of the last middle-button press, for panning
+    private double panX;
+    private double panY;
+
     /**
      * Constructs a default PlotPane with the size of 350x350.
      */
@@ -81,7 +163,52 @@ public class PlotPane extends Pane {
         yAxis.endXProperty().bind(widthProperty().divide(2));
         yAxis.endYProperty().bind(heightProperty().subtract(4));
 
-        getChildren().addAll(xAxis, yAxis);
+        // the transforms are applied right to left: translate first, then scale
+        plot.getTransforms().addAll(zoom, pan);
+        plot.getChildren().addAll(shapes, dots);
+
+        // keep the strokes of shapes added by subclasses one pixel wide
+        shapes.getChildren().addListener((ListChangeListener<Node>) change -> {
+            while (change.next())
+                for (Node n : change.getAddedSubList())
+                    fitToScale(n);
+        });
+
+        density.widthProperty().bind(widthProperty());
+        density.heightProperty().bind(heightProperty());
+        density.setMouseTransparent(true);
+
+        // nothing drawn in world coordinates should spill out of the pane
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(widthProperty());
+        clip.heightProperty().bind(heightProperty());
+        setClip(clip);
+
+        widthProperty().addListener(o -> refreshViewport());
+        heightProperty().addListener(o -> refreshViewport());
+
+        // zoom around the mouse with the scroll wheel
+        addEventHandler(ScrollEvent.SCROLL, event -> {
+            if (event.getDeltaY() != 0)
+                zoom(event.getDeltaY() > 0 ? 1.25 : 0.8, event.getX(), event.getY());
+        });
+
+        // pan by dragging with the middle button
+        addEventHandler(MouseEvent.MOUSE_PRESSED, event -> {
+            if (event.getButton() == MouseButton.MIDDLE) {
+                panX = event.getX();
+                panY = event.getY();
+            }
+        });
+        addEventHandler(MouseEvent.MOUSE_DRAGGED, event -> {
+            if (event.isMiddleButtonDown()) {
+                pan(event.getX() - panX, event.getY() - panY);
+                panX = event.getX();
+                panY = event.getY();
+            }
+        });
+
+        getChildren().addAll(xAxis, yAxis, density, plot);
     }
 
     /**
@@ -102,6 +229,30 @@ public class PlotPane extends Pane {
         return FXCollections.unmodifiableObservableList(circles);
     }
 
+    /**
+     * Returns the index of the given circle, which is also the index of
+     * its point, in constant time.
+     *
+     * @param c the circle
+     * @return the index of the circle, or -1 if it is not on this pane
+     */
+    public int indexOf(Circle c) {
+        Integer index = indexOfCircle.get(c);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Returns the list that subclasses add their own shapes to, such
+     * as lines between points. Shapes in this list are drawn in world
+     * coordinates under the circles, and their strokes stay one pixel
+     * wide at every zoom level.
+     *
+     * @return the modifiable list of plotted shapes
+     */
+    protected ObservableList<Node> getPlotChildren() {
+        return shapes.getChildren();
+    }
+
     /**
      * Returns the number of points.
      *
@@ -135,6 +286,185 @@ public class PlotPane extends Pane {
         yAxis.setOpacity(opacity);
     }
 
+    /**
+     * Getter and setter methods for detailLimit, the largest number
+     * of circles shown before the points are drawn as a density map.
+     */
+    public int getDetailLimit() {
+        return detailLimit;
+    }
+
+    public void setDetailLimit(int detailLimit) {
+        if (detailLimit < 0)
+            throw new IllegalArgumentException("detailLimit < 0");
+        this.detailLimit = detailLimit;
+        refreshViewport();
+    }
+
+    /**
+     * Returns true if the points are currently drawn as a density map
+     * instead of individual circles.
+     *
+     * @return true if the density map is shown
+     */
+    public boolean isDensityShown() {
+        return densityShown;
+    }
+
+    //////////////////////////////
+    // world-to-screen transform //
+    //////////////////////////////
+
+    public double getScale()                { return zoom.getX(); }
+    public double toScreenX(double x)       { return (x + pan.getX()) * zoom.getX(); }
+    public double toScreenY(double y)       { return (y + pan.getY()) * zoom.getY(); }
+    public double toWorldX(double x)        { return x / zoom.getX() - pan.getX(); }
+    public double toWorldY(double y)        { return y / zoom.getY() - pan.getY(); }
+
+    /**
+     * Zooms the viewport by the given factor, keeping the world
+     * position under the given screen position in place.
+     *
+     * @param factor  the zoom factor; greater than 1 zooms in
+     * @param screenX the x-coordinate of the pivot on screen
+     * @param screenY the y-coordinate of the pivot on screen
+     */
+    public void zoom(double factor, double screenX, double screenY) {
+        if (!(factor > 0))
+            throw new IllegalArgumentException("factor <= 0");
+
+        double worldX = toWorldX(screenX);
+        double worldY = toWorldY(screenY);
+        zoom.setX(zoom.getX() * factor);
+        zoom.setY(zoom.getY() * factor);
+
+        // move the pivot back under the mouse
+        pan.setX(screenX / zoom.getX() - worldX);
+        pan.setY(screenY / zoom.getY() - worldY);
+        refreshViewport();
+    }
+
+    /**
+     * Pans the viewport by the given distance on screen.
+     *
+     * @param dx the horizontal distance in pixels
+     * @param dy the vertical distance in pixels
+     */
+    public void pan(double dx, double dy) {
+        pan.setX(pan.getX() + dx / zoom.getX());
+        pan.setY(pan.getY() + dy / zoom.getY());
+        refreshViewport();
+    }
+
+    /**
+     * Resets the viewport so that world and screen coordinates are
+     * the same again.
+     */
+    public void resetViewport() {
+        zoom.setX(1);
+        zoom.setY(1);
+        pan.setX(0);
+        pan.setY(0);
+        refreshViewport();
+    }
+
+    /**
+     * Decides again which circles are inside the viewport and whether
+     * the density map should be shown. This is called whenever the
+     * viewport changes; after points move, it is called in the next
+     * layout of the pane.
+     */
+    public void refreshViewport() {
+        stale = false;
+
+        // a circle touching the edge is still visible
+        double margin = RADIUS / getScale();
+
+        List<Circle> visible = new ArrayList<>();
+        densityShown = !index.collect(toWorldX(0) - margin, toWorldY(0) - margin,
+                toWorldX(getWidth()) + margin, toWorldY(getHeight()) + margin, detailLimit, visible);
+        if (densityShown) {
+            dots.getChildren().clear();
+            drawDensity();
+        } else {
+            density.getGraphicsContext2D().clearRect(0, 0, density.getWidth(), density.getHeight());
+            for (Circle c : visible)
+                fitToScale(c);
+            dots.getChildren().setAll(visible);
+        }
+
+        for (Node n : shapes.getChildren())
+            fitToScale(n);
+    }
+
+    /**
+     * Has the viewport refreshed in the next layout, so that many
+     * changes in one pulse refresh it only once.
+     */
+    private void refreshLater() {
+        if (!stale) {
+            stale = true;
+            requestLayout();
+        }
+    }
+
+    @Override
+    protected void layoutChildren() {
+        super.layoutChildren();
+        if (stale)
+            refreshViewport();
+    }
+
+    /**
+     * Checks if a circle at the given position in world coordinates can
+     * be seen: it is inside the viewport or touching its edge.
+     */
+    protected boolean inViewport(double x, double y) {
+        double margin = RADIUS / getScale();
+        return x >= toWorldX(0) - margin && x <= toWorldX(getWidth()) + margin &&
+                y >= toWorldY(0) - margin && y <= toWorldY(getHeight()) + margin;
+    }
+
+    /**
+     * Draws the points as a density map. Each bin of the map covers
+     * BIN_SIZE by BIN_SIZE pixels on screen and is shaded by the log of
+     * the number of points in it. The counts are taken from the nodes
+     * of the quadtree no larger than a bin, so the drawing cost depends
+     * on the size of the pane rather than the number of points.
+     */
+    private void drawDensity() {
+        int cols = Math.max(1, (int) Math.ceil(getWidth() / BIN_SIZE));
+        int rows = Math.max(1, (int) Math.ceil(getHeight() / BIN_SIZE));
+        int[] bins = new int[cols * rows];
+        int max = index.bin(bins, cols, toWorldX(0), toWorldY(0), BIN_SIZE / getScale());
+
+        GraphicsContext g = density.getGraphicsContext2D();
+        g.clearRect(0, 0, density.getWidth(), density.getHeight());
+        double logMax = Math.log1p(max);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int count = bins[row * cols + col];
+                if (count > 0) {
+                    // even a single point gets a visible shade
+                    int shade = (int) Math.round((SHADES.length - 1) * Math.log1p(count) / logMax);
+                    g.setFill(SHADES[shade]);
+                    g.fillRect(col * BIN_SIZE, row * BIN_SIZE, BIN_SIZE, BIN_SIZE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Undoes the zoom on the size of the given node, so that circles
+     * keep their radius and shapes keep their stroke width on screen.
+     */
+    private void fitToScale(Node n) {
+        if (n instanceof Circle)
+            ((Circle) n).setRadius(RADIUS / getScale());
+        if (n instanceof Shape)
+            ((Shape) n).setStrokeWidth(1 / getScale());
+    }
+
     /**
      * Add a point to this pane with the given x- and y-coordinates.
      *
@@ -162,8 +492,9 @@ public class PlotPane extends Pane {
             numPoints++;
 
             // create a circle on the mouse position
-            Circle c = new Circle(p.getX(), p.getY(), 5);
+            Circle c = new Circle(p.getX(), p.getY(), RADIUS / getScale());
             c.setFill(Color.DARKSLATEGRAY);
+            c.setStrokeWidth(1 / getScale());
 
             // bidirectionally bind the coordinates of the point and the
             // position of its circle representation, so that the change
@@ -171,11 +502,56 @@ public class PlotPane extends Pane {
             p.xProperty().bindBidirectional(c.centerXProperty());
             p.yProperty().bindBidirectional(c.centerYProperty());
 
+            indexOfCircle.put(c, circles.size());
             circles.add(c);
-            getChildren().add(c);
+            index.insert(c, p.getX(), p.getY());
+            c.centerXProperty().addListener(moved);
+            c.centerYProperty().addListener(moved);
+
+            // only add the circle to the scene if it can be seen
+            if (densityShown || dots.getChildren().size() >= detailLimit)
+                refreshLater();
+            else if (inViewport(p.getX(), p.getY()))
+                dots.getChildren().add(c);
         }
     }
 
+    /**
+     * Add the points with the given coordinates to this pane at once,
+     * as when a saved session is opened. Unlike add(Point), this does
+     * not check whether the pane already has each point, and the
+     * viewport is refreshed only once at the end.
+     *
+     * @param x the x-coordinates of the points
+     * @param y the y-coordinates of the points
+     */
+    public void addAll(double[] x, double[] y) {
+        if (x.length != y.length)
+            throw new IllegalArgumentException("x.length != y.length");
+
+        List<Point> added = new ArrayList<>(x.length);
+        List<Circle> addedCircles = new ArrayList<>(x.length);
+        for (int i = 0; i < x.length; i++) {
+            Point p = new Point(x[i], y[i]);
+            Circle c = new Circle(x[i], y[i], RADIUS / getScale());
+            c.setFill(Color.DARKSLATEGRAY);
+            c.setStrokeWidth(1 / getScale());
+            p.xProperty().bindBidirectional(c.centerXProperty());
+            p.yProperty().bindBidirectional(c.centerYProperty());
+            added.add(p);
+            addedCircles.add(c);
+            indexOfCircle.put(c, circles.size() + i);
+            index.insert(c, x[i], y[i]);
+            c.centerXProperty().addListener(moved);
+            c.centerYProperty().addListener(moved);
+        }
+
+        points.addAll(added);
+        circles.addAll(addedCircles);
+        numPoints += x.length;
+        refreshViewport();
+    }
+
     /**
      * Remove the point of the specified index from this pane.
      *
@@ -187,7 +563,19 @@ public class PlotPane extends Pane {
 
             // remove from both lists and the pane
             points.remove(index);
-            getChildren().remove(circles.remove(index));
+            Circle removed = circles.remove(index);
+            dots.getChildren().remove(removed);
+            removed.centerXProperty().removeListener(moved);
+            removed.centerYProperty().removeListener(moved);
+            this.index.remove(removed, removed.getCenterX(), removed.getCenterY());
+
+            // the circles after it move up by one, which costs O(n) per
+            // removal, no more than removing from the lists above
+            indexOfCircle.remove(removed);
+            for (int i = index; i < circles.size(); i++)
+                indexOfCircle.put(circles.get(i), i);
+            if (densityShown)
+                refreshLater();
         }
     }
 
@@ -207,9 +595,16 @@ public class PlotPane extends Pane {
      */
     public void clear() {
         numPoints = 0;
+        for (Circle c : circles) {
+            c.centerXProperty().removeListener(moved);
+            c.centerYProperty().removeListener(moved);
+        }
+        index.clear();
         points.clear();
         circles.clear();
-        getChildren().clear();
-        getChildren().addAll(xAxis, yAxis);
+        indexOfCircle.clear();
+        shapes.getChildren().clear();
+        dots.getChildren().clear();
+        refreshViewport();
     }
 }
@@ -47,9 +47,17 @@ public final class Point implements Comparable<Point> {
      * @return the distance
      */
     public double distance(Point other) {
-        double a = this.getX() - other.getX();
-        double b = this.getY() - other.getY();
-        return Math.sqrt(a * a + b * b);
+        return Metric.EUCLIDEAN.distance(this, other);
+    }
+
+    /**
+     * Returns the distance of this point and the given point in the
+     * given metric.
+     *
+     * @return the distance
+     */
+    public double distance(Point other, Metric metric) {
+        return metric.distance(this, other);
     }
 
     /**
@@ -73,13 +81,14 @@ public final class Point implements Comparable<Point> {
 
     /**
      * Returns a string representation of this point. The string
-     * consists of the x- and y-coordinates.
+     * consists of the x- and y-coordinates, rounded to whole numbers.
      *
      * @return a string representation of this point
+     * @see PointFormat
      */
     @Override
     public String toString() {
-        return String.format("(%.0f, %.0f)", x.get(), y.get());
+        return PointFormat.format(this);
     }
 
     /**
@@ -0,0 +1,72 @@
+package point;
+
+/**
+ * A class that writes the coordinates of points the way Point.toString()
+ * shows them, "(x, y)" with each coordinate rounded half away from zero
+ * to a whole number, as String.format("%.0f") does. The digits are
+ * written straight into a StringBuilder without going through a
+ * Formatter, so a caller that keeps its builder, such as a cell of a
+ * list of points, allocates nothing but the string it shows.
+ */
+public final class PointFormat {
+
+    // coordinates at least this large are whole numbers already, and
+    // may not fit in a long
+    private static final double WHOLE = 0x1p52;
+
+    private PointFormat() {
+    }
+
+    /**
+     * Returns the coordinates of the given point as a string.
+     *
+     * @param p the point
+     * @return the string "(x, y)"
+     */
+    public static String format(Point p) {
+        return append(new StringBuilder(16), p.getX(), p.getY()).toString();
+    }
+
+    /**
+     * Appends the coordinates (x, y) to the given builder.
+     *
+     * @param sb the builder
+     * @param x  the x-coordinate
+     * @param y  the y-coordinate
+     * @return the builder
+     */
+    public static StringBuilder append(StringBuilder sb, double x, double y) {
+        sb.append('(');
+        appendRounded(sb, x);
+        sb.append(", ");
+        appendRounded(sb, y);
+        return sb.append(')');
+    }
+
+    /**
+     * Appends the given value rounded to a whole number to the builder.
+     * As with String.format("%.0f"), a negative value that rounds to
+     * zero is written as "-0".
+     *
+     * @param sb the builder
+     * @param v  the value
+     * @return the builder
+     */
+    public static StringBuilder appendRounded(StringBuilder sb, double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v))
+            return sb.append(v);
+
+        double abs = Math.abs(v);
+        if (abs >= WHOLE)
+            return sb.append(String.format("%.0f", v));
+
+        // the fraction is exact below 2^52, so a value just under a half
+        // is not rounded up as Math.round(abs) would by adding 0.5 to it
+        long whole = (long) abs;
+        if (abs - whole >= 0.5)
+            whole++;
+        if (Double.doubleToRawLongBits(v) < 0)
+            sb.append('-');
+        return sb.append(whole);
+    }
+}
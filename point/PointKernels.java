@@ -0,0 +1,90 @@
+package point;
+
+/**
+ * The inner loops of the closest pair and the convex hull algorithms,
+ * written over primitive coordinate arrays so that they can run on
+ * whole vectors of points at once.
+ *
+ * Two implementations exist. VectorKernels uses the incubating Vector
+ * API. It is kept in the separate source root vector/, so that the rest
+ * of the program compiles without the jdk.incubator.vector module, and
+ * it is chosen when it was compiled and the program is run with
+ * --add-modules jdk.incubator.vector. Otherwise, or when the system
+ * property point.scalar is true, the plain loops of ScalarKernels are
+ * used. The choice is made once, when this class is loaded.
+ */
+public abstract class PointKernels {
+
+    private static final PointKernels INSTANCE = load();
+
+    /**
+     * Returns the kernels chosen for this JVM.
+     *
+     * @return the kernels
+     */
+    public static PointKernels get() {
+        return INSTANCE;
+    }
+
+    private static PointKernels load() {
+        if (!Boolean.getBoolean("point.scalar") &&
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            // loaded by name so that this class never links against the module
+            try {
+                return (PointKernels) Class.forName("point.VectorKernels")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // use the scalar kernels below
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * Returns a short name of these kernels, such as "scalar".
+     *
+     * @return the name
+     */
+    public abstract String name();
+
+    /**
+     * Finds the point in [from, to) that is closest to (px, py).
+     *
+     * @param x    the x-coordinates of the points
+     * @param y    the y-coordinates of the points
+     * @param from the first index, inclusive
+     * @param to   the last index, exclusive
+     * @param px   the x-coordinate of the point to compare with
+     * @param py   the y-coordinate of the point to compare with
+     * @return the smallest index of a closest point, or -1 if the range
+     *         is empty
+     */
+    public abstract int nearest(double[] x, double[] y, int from, int to, double px, double py);
+
+    /**
+     * Finds the next vertex of the convex hull after the vertex p1 in
+     * gift-wrapping order, that is, the point that no other point is
+     * to the left of when looking from p1. Of the points on a line with
+     * p1, the farthest one is chosen.
+     *
+     * @param x     the x-coordinates of the points
+     * @param y     the y-coordinates of the points
+     * @param n     the number of points
+     * @param p1    the index of the current vertex
+     * @param start the index of the first vertex of the hull
+     * @return the index of the next vertex
+     */
+    public abstract int nextHullVertex(double[] x, double[] y, int n, int p1, int start);
+
+    /**
+     * Checks if the candidate (bx, by) should replace (ax, ay) as the
+     * next hull vertex, both given relative to the current vertex. This
+     * is the rule of the gift-wrapping scan, used by every implementation
+     * to combine partial results.
+     */
+    static boolean turnsLeft(double ax, double ay, double bx, double by) {
+        // >0 left; =0 on-line; <0 right
+        double direction = ax * by - bx * ay;
+        return direction > 0 || (direction == 0 && bx * bx + by * by > ax * ax + ay * ay);
+    }
+}
@@ -0,0 +1,149 @@
+package point;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class that stores points of any number of dimensions. Unlike Point,
+ * which has an x and a y property for a UI to bind to, the points of a
+ * store are kept one after another in a single array of doubles, the k-th
+ * coordinate of point i at index i * dimension() + k, so that engines can
+ * work on millions of points in 3 to 8 dimensions without an object per
+ * point.
+ */
+public final class PointStore {
+
+    private final int dimension;
+    private double[] coordinates;
+    private int size;
+
+    /**
+     * Constructs an empty store of points with the given dimension.
+     *
+     * @param dimension the number of coordinates of every point
+     */
+    public PointStore(int dimension) {
+        if (dimension < 1)
+            throw new IllegalArgumentException("dimension < 1");
+        this.dimension = dimension;
+        this.coordinates = new double[16 * dimension];
+    }
+
+    /**
+     * Constructs a store of points with the given dimension over the
+     * given coordinates, the coordinates of every point one after
+     * another. The array is used as it is, not copied.
+     *
+     * @param dimension   the number of coordinates of every point
+     * @param coordinates the coordinates of the points
+     */
+    public PointStore(int dimension, double[] coordinates) {
+        if (dimension < 1)
+            throw new IllegalArgumentException("dimension < 1");
+        if (coordinates.length % dimension != 0)
+            throw new IllegalArgumentException("coordinates.length % dimension != 0");
+        this.dimension = dimension;
+        this.coordinates = coordinates;
+        this.size = coordinates.length / dimension;
+    }
+
+    /**
+     * Returns a 2-D store of the given points.
+     *
+     * @param points the list of points
+     * @return the store
+     */
+    public static PointStore of(List<Point> points) {
+        double[] coordinates = new double[2 * points.size()];
+        int i = 0;
+        for (Point p : points) {
+            coordinates[i++] = p.getX();
+            coordinates[i++] = p.getY();
+        }
+        return new PointStore(2, coordinates);
+    }
+
+    /**
+     * Returns the number of coordinates of every point.
+     *
+     * @return the dimension
+     */
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Returns the number of points.
+     *
+     * @return number of points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a point with the given coordinates.
+     *
+     * @param point the coordinates of the point
+     */
+    public void add(double... point) {
+        if (point.length != dimension)
+            throw new IllegalArgumentException("point.length != dimension");
+        if ((size + 1) * dimension > coordinates.length)
+            coordinates = Arrays.copyOf(coordinates, Math.max(2 * coordinates.length, (size + 1) * dimension));
+        System.arraycopy(point, 0, coordinates, size * dimension, dimension);
+        size++;
+    }
+
+    /**
+     * Returns the k-th coordinate of the point of the given index.
+     *
+     * @param i the index of the point
+     * @param k the index of the coordinate
+     * @return the coordinate
+     */
+    public double get(int i, int k) {
+        if (i < 0 || i >= size || k < 0 || k >= dimension)
+            throw new IndexOutOfBoundsException("point " + i + ", coordinate " + k);
+        return coordinates[i * dimension + k];
+    }
+
+    /**
+     * Returns a copy of the coordinates of the point of the given index.
+     *
+     * @param i the index of the point
+     * @return the coordinates
+     */
+    public double[] point(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("point " + i);
+        return Arrays.copyOfRange(coordinates, i * dimension, (i + 1) * dimension);
+    }
+
+    /**
+     * Returns the k-th coordinates of all points, such as the
+     * x-coordinates for k = 0, in a new array.
+     *
+     * @param k the index of the coordinate
+     * @return the coordinates
+     */
+    public double[] column(int k) {
+        if (k < 0 || k >= dimension)
+            throw new IndexOutOfBoundsException("coordinate " + k);
+        double[] column = new double[size];
+        for (int i = 0; i < size; i++)
+            column[i] = coordinates[i * dimension + k];
+        return column;
+    }
+
+    /**
+     * Returns the array the coordinates are stored in, without copying
+     * it. Only the first size() * dimension() entries are coordinates
+     * of points, and the array is replaced as points are added.
+     *
+     * @return the coordinates of the points, one point after another
+     */
+    public double[] coordinates() {
+        return coordinates;
+    }
+}
@@ -0,0 +1,296 @@
+package point;
+
+import javafx.scene.shape.Circle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A quadtree over the circles of a PlotPane in world coordinates, which
+ * keeps the number of circles under every node. The pane asks it for
+ * the circles inside the viewport and for the number of circles in every
+ * bin of the density map. Both only visit the nodes inside the viewport:
+ * finding the circles stops as soon as there are too many to show, and
+ * the density map stops at nodes no larger than a bin, so its cost
+ * depends on the pixels of the pane rather than on the number of points.
+ * The leaves keep the positions of their circles in arrays, so that they
+ * are read without going through the properties of the circles.
+ */
+final class QuadTree {
+
+    // the most circles a leaf holds before it is split
+    private static final int CAPACITY = 16;
+
+    /**
+     * A square of the tree: a leaf with its circles, or a node with four
+     * children, the lower-left one first.
+     */
+    private static final class Node {
+        final double x;
+        final double y;
+        final double size;
+        int count;
+        Node[] children;
+
+        // the circles of a leaf and their positions, the first count of them
+        Circle[] circles = new Circle[CAPACITY];
+        double[] xs = new double[CAPACITY];
+        double[] ys = new double[CAPACITY];
+
+        Node(double x, double y, double size) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+
+        void add(Circle c, double x, double y) {
+            if (count == circles.length) {
+                circles = Arrays.copyOf(circles, 2 * count);
+                xs = Arrays.copyOf(xs, 2 * count);
+                ys = Arrays.copyOf(ys, 2 * count);
+            }
+            circles[count] = c;
+            xs[count] = x;
+            ys[count] = y;
+            count++;
+        }
+
+        void toInner() {
+            circles = null;
+            xs = null;
+            ys = null;
+            children = new Node[4];
+        }
+    }
+
+    private Node root;
+
+    // circles at coordinates that are not finite, which are never shown
+    private final List<Circle> stray = new ArrayList<>();
+
+    /**
+     * Returns the number of circles in this tree.
+     */
+    int size() {
+        return ((root == null) ? 0 : root.count) + stray.size();
+    }
+
+    /**
+     * Adds a circle at the given position.
+     */
+    void insert(Circle c, double x, double y) {
+        if (!Double.isFinite(x) || !Double.isFinite(y)) {
+            stray.add(c);
+            return;
+        }
+
+        if (root == null)
+            root = new Node(Math.floor(x) - 64, Math.floor(y) - 64, 128);
+
+        // grow the root towards the position until it is inside
+        while (!contains(root, x, y)) {
+            int old = ((x < root.x) ? 1 : 0) + ((y < root.y) ? 2 : 0);
+            double left = (x < root.x) ? root.x - root.size : root.x;
+            double bottom = (y < root.y) ? root.y - root.size : root.y;
+            Node grown = new Node(left, bottom, 2 * root.size);
+            grown.toInner();
+            grown.count = root.count;
+            for (int i = 0; i < 4; i++)
+                grown.children[i] = (i == old) ? root
+                        : new Node(left + (i & 1) * root.size, bottom + (i >> 1) * root.size, root.size);
+            root = grown;
+        }
+
+        Node n = root;
+        while (n.children != null) {
+            n.count++;
+            n = n.children[quadrant(n, x, y)];
+        }
+        n.add(c, x, y);
+        if (n.count > CAPACITY)
+            split(n);
+    }
+
+    /**
+     * Removes a circle that was added at the given position.
+     */
+    void remove(Circle c, double x, double y) {
+        if (!Double.isFinite(x) || !Double.isFinite(y))
+            stray.remove(c);
+        else if (root != null && contains(root, x, y))
+            remove(root, c, x, y);
+    }
+
+    /**
+     * Moves a circle from the position it was added at to another one.
+     */
+    void move(Circle c, double oldX, double oldY, double x, double y) {
+        remove(c, oldX, oldY);
+        insert(c, x, y);
+    }
+
+    /**
+     * Removes every circle.
+     */
+    void clear() {
+        root = null;
+        stray.clear();
+    }
+
+    /**
+     * Adds the circles inside the given rectangle to the given list,
+     * unless there are more than limit of them.
+     *
+     * @return false if there are more than limit circles in the rectangle
+     */
+    boolean collect(double minX, double minY, double maxX, double maxY, int limit, List<Circle> out) {
+        return root == null || collect(root, minX, minY, maxX, maxY, limit, out);
+    }
+
+    /**
+     * Counts the circles in the bins of a grid whose lower-left corner
+     * is at (x0, y0) and whose bins have the given side, all in world
+     * coordinates. A node no larger than a bin is counted in the bin of
+     * its centre, as a whole; the circles of a leaf are counted one by one.
+     *
+     * @param bins the counts of the bins, row by row
+     * @param cols the number of columns of the grid
+     * @return the largest count of a bin
+     */
+    int bin(int[] bins, int cols, double x0, double y0, double side) {
+        if (root == null)
+            return 0;
+        int rows = bins.length / cols;
+        return bin(root, bins, cols, rows, x0, y0, side, x0 + cols * side, y0 + rows * side);
+    }
+
+    ///////////////////////////// Nodes /////////////////////////////
+
+    private static boolean contains(Node n, double x, double y) {
+        return x >= n.x && x < n.x + n.size && y >= n.y && y < n.y + n.size;
+    }
+
+    private static int quadrant(Node n, double x, double y) {
+        double half = n.size / 2;
+        return ((x >= n.x + half) ? 1 : 0) + ((y >= n.y + half) ? 2 : 0);
+    }
+
+    private static void split(Node n) {
+        // circles at one position, or squares too small to halve, stay in one leaf
+        double half = n.size / 2;
+        if (n.x + half == n.x || n.y + half == n.y || n.x + half == n.x + n.size || n.y + half == n.y + n.size)
+            return;
+        boolean apart = false;
+        for (int i = 1; i < n.count && !apart; i++)
+            apart = n.xs[i] != n.xs[0] || n.ys[i] != n.ys[0];
+        if (!apart)
+            return;
+
+        Circle[] circles = n.circles;
+        double[] xs = n.xs, ys = n.ys;
+        n.toInner();
+        for (int i = 0; i < 4; i++)
+            n.children[i] = new Node(n.x + (i & 1) * half, n.y + (i >> 1) * half, half);
+        for (int i = 0; i < n.count; i++)
+            n.children[quadrant(n, xs[i], ys[i])].add(circles[i], xs[i], ys[i]);
+        for (Node child : n.children)
+            if (child.count > CAPACITY)
+                split(child);
+    }
+
+    private static boolean remove(Node n, Circle c, double x, double y) {
+        if (n.children == null) {
+            for (int i = 0; i < n.count; i++) {
+                if (n.circles[i] == c) {
+                    // the last circle takes its place
+                    n.count--;
+                    n.circles[i] = n.circles[n.count];
+                    n.xs[i] = n.xs[n.count];
+                    n.ys[i] = n.ys[n.count];
+                    n.circles[n.count] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean removed = remove(n.children[quadrant(n, x, y)], c, x, y);
+        if (removed && --n.count <= CAPACITY) {
+            // few enough circles are left to make this a leaf again
+            Node[] children = n.children;
+            n.children = null;
+            n.circles = new Circle[CAPACITY];
+            n.xs = new double[CAPACITY];
+            n.ys = new double[CAPACITY];
+            n.count = 0;
+            for (Node child : children)
+                gather(child, n);
+        }
+        return removed;
+    }
+
+    private static void gather(Node n, Node leaf) {
+        if (n.children == null) {
+            for (int i = 0; i < n.count; i++)
+                leaf.add(n.circles[i], n.xs[i], n.ys[i]);
+        } else {
+            for (Node child : n.children)
+                gather(child, leaf);
+        }
+    }
+
+    private static boolean collect(Node n, double minX, double minY, double maxX, double maxY,
+                                   int limit, List<Circle> out) {
+        if (n.count == 0 || n.x > maxX || n.y > maxY || n.x + n.size < minX || n.y + n.size < minY)
+            return true;
+
+        // a node inside the rectangle adds all of its circles
+        boolean inside = n.x >= minX && n.y >= minY && n.x + n.size <= maxX && n.y + n.size <= maxY;
+        if (inside && out.size() + n.count > limit)
+            return false;
+
+        if (n.children != null) {
+            for (Node child : n.children)
+                if (!collect(child, minX, minY, maxX, maxY, limit, out))
+                    return false;
+            return true;
+        }
+        for (int i = 0; i < n.count; i++) {
+            if (n.xs[i] >= minX && n.xs[i] <= maxX && n.ys[i] >= minY && n.ys[i] <= maxY) {
+                if (out.size() == limit)
+                    return false;
+                out.add(n.circles[i]);
+            }
+        }
+        return true;
+    }
+
+    private static int bin(Node n, int[] bins, int cols, int rows, double x0, double y0, double side,
+                           double x1, double y1) {
+        if (n.count == 0 || n.x >= x1 || n.y >= y1 || n.x + n.size < x0 || n.y + n.size < y0)
+            return 0;
+
+        if (n.size <= side && n.children != null)
+            return add(bins, cols, rows, x0, y0, side, n.x + n.size / 2, n.y + n.size / 2, n.count);
+
+        int max = 0;
+        if (n.children != null) {
+            for (Node child : n.children)
+                max = Math.max(max, bin(child, bins, cols, rows, x0, y0, side, x1, y1));
+        } else {
+            for (int i = 0; i < n.count; i++)
+                max = Math.max(max, add(bins, cols, rows, x0, y0, side, n.xs[i], n.ys[i], 1));
+        }
+        return max;
+    }
+
+    private static int add(int[] bins, int cols, int rows, double x0, double y0, double side,
+                           double x, double y, int count) {
+        int col = (int) Math.floor((x - x0) / side);
+        int row = (int) Math.floor((y - y0) / side);
+        if (col < 0 || row < 0 || col >= cols || row >= rows)
+            return 0;
+        return bins[row * cols + col] += count;
+    }
+}
@@ -0,0 +1,40 @@
+package point;
+
+/**
+ * The kernels of PointKernels as plain loops, used when the Vector API
+ * is not available.
+ *
+ * @see PointKernels
+ */
+final class ScalarKernels extends PointKernels {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public int nearest(double[] x, double[] y, int from, int to, double px, double py) {
+        int nearest = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            double dx = x[i] - px;
+            double dy = y[i] - py;
+            double d = dx * dx + dy * dy;
+            if (d < best) {
+                best = d;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    @Override
+    public int nextHullVertex(double[] x, double[] y, int n, int p1, int start) {
+        int p2 = start;
+        for (int p = 0; p < n; p++)
+            if (turnsLeft(x[p2] - x[p1], y[p2] - y[p1], x[p] - x[p1], y[p] - y[p1]))
+                p2 = p;
+        return p2;
+    }
+}
@@ -0,0 +1,530 @@
+package point;
+
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A class that saves a plotting session to disk and opens it again.
+ * Every point added, removed or moved on a pane is appended to a binary
+ * journal as it happens, and every so many records the whole set of
+ * points is written to a snapshot, after which the journal starts over.
+ * Opening a session reads the snapshot and replays only the journal
+ * written after it, so the time it takes does not grow with the length
+ * of the session. Both files are memory-mapped to be read, and the
+ * coordinates are kept as doubles, without any rounding.
+ *
+ * A session with the base path "name" is kept in "name.snapshot" and
+ * two journals, "name.journal" and "name.journal.1", used in turns.
+ * Each file starts with a generation number, and a journal is replayed
+ * only if it is newer than the snapshot. A snapshot is written in the
+ * background: the points are copied and the next journal is started in
+ * the other file at once, and the old journal is only reused once the
+ * snapshot that covers it is on disk, so a crash while a snapshot is
+ * being written loses nothing.
+ *
+ * A move is written as one record with the position of the point once
+ * it is written, however many times the point moved before: moves are
+ * written before any other record and on flush(), snapshot() and
+ * close(). The journal is written through a buffer, so the events since
+ * the last flush() are lost if the program ends without close(); an
+ * application calls flush() every so often, as ClosestPair does every
+ * second. A record that cannot be written stops the recording, and its
+ * error is thrown by the next flush() or close() rather than to the
+ * code that changed the list.
+ */
+public final class SessionJournal implements Closeable {
+
+    private static final int MAGIC = 0x504C4F54; // "PLOT"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+
+    // the types of records in the journal
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte MOVE = 3;
+    private static final byte CLEAR = 4;
+
+    private final Path snapshotPath;
+    private final Path[] journalPaths;
+
+    // the points of the session while it is being opened
+    private double[] x;
+    private double[] y;
+    private int size;
+
+    // the points being recorded, the index of each of them, and the
+    // points that moved since their last record
+    private ObservableList<Point> points;
+    private final Map<Point, Integer> indexOf = new IdentityHashMap<>();
+    private final Map<Point, InvalidationListener> moves = new IdentityHashMap<>();
+    private final Set<Point> moved = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private long generation;
+    private int current;
+    private FileChannel journal;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private int records;
+    private int snapshotInterval = 100_000;
+
+    // the error that stopped the recording, if any
+    private IOException failure;
+
+    // writes the snapshots, so that recording never waits for the disk
+    private final ExecutorService snapshots = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> snapshotting;
+
+    private SessionJournal(Path base) {
+        this.snapshotPath = base.resolveSibling(base.getFileName() + ".snapshot");
+        this.journalPaths = new Path[] {
+                base.resolveSibling(base.getFileName() + ".journal"),
+                base.resolveSibling(base.getFileName() + ".journal.1")
+        };
+    }
+
+    /**
+     * Opens the session with the given base path, reading its points
+     * if it exists. Nothing is recorded until record() or restore() is
+     * called.
+     *
+     * @param base the base path of the session files
+     * @return the session
+     * @throws IOException if the files cannot be read
+     */
+    public static SessionJournal open(Path base) throws IOException {
+        SessionJournal session = new SessionJournal(base);
+        session.x = new double[16];
+        session.y = new double[16];
+
+        long snapshot = session.readSnapshot();
+        session.generation = session.replay(snapshot);
+        return session;
+    }
+
+    /**
+     * Returns the number of points read when the session was opened.
+     *
+     * @return number of points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the coordinates of the points read when the session was
+     * opened.
+     *
+     * @return a copy of the x- or y-coordinates
+     */
+    public double[] getX() {
+        return Arrays.copyOf(x, size);
+    }
+
+    public double[] getY() {
+        return Arrays.copyOf(y, size);
+    }
+
+    /**
+     * Getter and setter methods for snapshotInterval, the number of
+     * journal records after which a snapshot is written.
+     */
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(int snapshotInterval) {
+        if (snapshotInterval < 1)
+            throw new IllegalArgumentException("snapshotInterval < 1");
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Adds the points of the session to the given pane and records the
+     * changes to the pane from then on.
+     *
+     * @param pane the pane
+     * @throws IOException if the journal cannot be written
+     */
+    public void restore(PlotPane pane) throws IOException {
+        pane.addAll(getX(), getY());
+        record(pane.getPoints());
+    }
+
+    /**
+     * Records the changes to the given list of points from now on. The
+     * list should hold the points of the session, as after restore().
+     * A snapshot of it is written first.
+     *
+     * @param points the list of points
+     * @throws IOException if the files cannot be written
+     */
+    public void record(ObservableList<Point> points) throws IOException {
+        if (this.points != null)
+            throw new IllegalStateException("already recording");
+
+        this.points = points;
+        x = y = null;
+        size = 0;
+        for (int i = 0; i < points.size(); i++)
+            watch(points.get(i), i);
+
+        points.addListener((ListChangeListener<Point>) change -> {
+            if (failure != null)
+                return;
+            try {
+                // the moves so far, at the indices from before this change
+                writeMoves();
+
+                int from = points.size();
+                while (change.next()) {
+                    from = Math.min(from, change.getFrom());
+                    if (change.wasRemoved()) {
+                        for (Point p : change.getRemoved())
+                            unwatch(p);
+                        if (points.isEmpty() && !change.wasAdded())
+                            write(CLEAR, 0, 0, 0);
+                        else
+                            for (int i = 0; i < change.getRemovedSize(); i++)
+                                write(REMOVE, change.getFrom(), 0, 0);
+                    }
+                    if (change.wasAdded()) {
+                        for (int i = change.getFrom(); i < change.getTo(); i++) {
+                            Point p = points.get(i);
+                            watch(p, i);
+                            write(ADD, i, p.getX(), p.getY());
+                        }
+                    }
+                }
+
+                // the points after the change may have new indices
+                for (int i = from; i < points.size(); i++)
+                    indexOf.put(points.get(i), i);
+                snapshotIfDue();
+            } catch (IOException e) {
+                failure = e;
+            }
+        });
+
+        snapshot();
+    }
+
+    // records the moves of a point
+    private void watch(Point p, int index) {
+        InvalidationListener move = o -> moved.add(p);
+        p.xProperty().addListener(move);
+        p.yProperty().addListener(move);
+        moves.put(p, move);
+        indexOf.put(p, index);
+    }
+
+    private void unwatch(Point p) {
+        InvalidationListener move = moves.remove(p);
+        if (move != null) {
+            p.xProperty().removeListener(move);
+            p.yProperty().removeListener(move);
+            indexOf.remove(p);
+            moved.remove(p);
+        }
+    }
+
+    // writes one record for every point that moved, at its position now
+    private void writeMoves() throws IOException {
+        if (moved.isEmpty())
+            return;
+        for (Point p : moved)
+            write(MOVE, indexOf.get(p), p.getX(), p.getY());
+        moved.clear();
+    }
+
+    /**
+     * Writes all the points to a new snapshot and starts a new journal,
+     * and waits until the snapshot is on disk.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    public void snapshot() throws IOException {
+        startSnapshot();
+        awaitSnapshot();
+    }
+
+    // copies the points and starts the next journal in the other file
+    // now, and writes the snapshot in the background
+    private void startSnapshot() throws IOException {
+        if (points == null)
+            throw new IllegalStateException("not recording");
+
+        // the other file may only be reused once the last snapshot covers it
+        awaitSnapshot();
+        writeMoves();
+
+        int n = points.size();
+        double[] px = new double[n];
+        double[] py = new double[n];
+        for (int i = 0; i < n; i++) {
+            px[i] = points.get(i).getX();
+            py[i] = points.get(i).getY();
+        }
+        long covered = generation;
+
+        // the journal so far will be in the snapshot; start the next generation.
+        // When recording starts, both journals may hold events that no
+        // snapshot covers yet, so that first snapshot is written right away
+        boolean first = journal == null;
+        if (first) {
+            writeSnapshot(covered, px, py);
+        } else {
+            flush();
+            journal.close();
+        }
+        current = 1 - current;
+        generation = covered + 1;
+        journal = FileChannel.open(journalPaths[current], CREATE, WRITE, TRUNCATE_EXISTING);
+        buffer.clear();
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(generation);
+        flush();
+        records = 0;
+
+        if (!first) {
+            snapshotting = snapshots.submit(() -> {
+                writeSnapshot(covered, px, py);
+                return null;
+            });
+        }
+    }
+
+    // waits for the snapshot being written, if any
+    private void awaitSnapshot() throws IOException {
+        if (snapshotting == null)
+            return;
+        try {
+            snapshotting.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing " + snapshotPath);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            snapshotting = null;
+        }
+    }
+
+    private void writeSnapshot(long covered, double[] px, double[] py) throws IOException {
+        int n = px.length;
+
+        // the x-coordinates and then the y-coordinates, each in one block
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER + 4 + 16 * n);
+        bytes.putInt(MAGIC).putInt(VERSION).putLong(covered).putInt(n);
+        DoubleBuffer coordinates = bytes.asDoubleBuffer();
+        coordinates.put(px);
+        coordinates.put(py);
+
+        // replace the old snapshot only once the new one is complete
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            bytes.rewind();
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+            channel.force(true);
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the moves and the buffered records to the journal.
+     *
+     * @throws IOException if the journal cannot be written, now or when
+     *                     a change to the list was recorded
+     */
+    public void flush() throws IOException {
+        if (failure != null)
+            throw failure;
+        if (journal == null)
+            return;
+        writeMoves();
+        buffer.flip();
+        while (buffer.hasRemaining())
+            journal.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Stops recording, waits for a snapshot being written and closes
+     * the journal.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            awaitSnapshot();
+        } finally {
+            snapshots.shutdown();
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    private void write(byte type, int index, double px, double py) throws IOException {
+        if (journal == null)
+            return;
+        if (buffer.remaining() < 21) {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                journal.write(buffer);
+            buffer.clear();
+        }
+
+        buffer.put(type);
+        if (type != CLEAR)
+            buffer.putInt(index);
+        if (type == ADD || type == MOVE)
+            buffer.putDouble(px).putDouble(py);
+        records++;
+    }
+
+    // a snapshot is only taken between changes, when the list and the
+    // journal agree, and not while the last one is still being written
+    private void snapshotIfDue() throws IOException {
+        if (records >= snapshotInterval && (snapshotting == null || snapshotting.isDone()))
+            startSnapshot();
+    }
+
+    ///////////////////////////// Reading /////////////////////////////
+
+    // reads the snapshot, if any, and returns the generation it covers
+    private long readSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath))
+            return 0;
+
+        try (FileChannel channel = FileChannel.open(snapshotPath, READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long covered = header(bytes, snapshotPath);
+            int n = (bytes.remaining() >= 4) ? bytes.getInt() : -1;
+            if (n < 0 || bytes.remaining() != 16L * n)
+                throw new IOException(snapshotPath + ": truncated or corrupt snapshot of "
+                        + channel.size() + " bytes");
+
+            x = new double[Math.max(n, 16)];
+            y = new double[Math.max(n, 16)];
+            DoubleBuffer coordinates = bytes.asDoubleBuffer();
+            coordinates.get(x, 0, n);
+            coordinates.get(y, 0, n);
+            size = n;
+            return covered;
+        }
+    }
+
+    // replays the journals newer than the snapshot, oldest first, and
+    // returns the newest generation
+    private long replay(long covered) throws IOException {
+        long[] generations = new long[journalPaths.length];
+        for (int i = 0; i < journalPaths.length; i++)
+            generations[i] = generationOf(journalPaths[i]);
+
+        // the newer journal is the current one, even if neither is replayed
+        current = (generations[1] > generations[0]) ? 1 : 0;
+        int older = 1 - current;
+        long newest = covered;
+        for (int i : new int[] {older, current}) {
+            if (generations[i] > covered) {
+                replay(journalPaths[i]);
+                newest = Math.max(newest, generations[i]);
+            }
+        }
+        return newest;
+    }
+
+    private static long generationOf(Path path) throws IOException {
+        if (!Files.exists(path) || Files.size(path) < HEADER)
+            return -1;
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            return header(channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER), path);
+        }
+    }
+
+    private void replay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            header(bytes, path);
+
+            // a record cut short by a crash ends the journal
+            while (bytes.hasRemaining()) {
+                byte type = bytes.get();
+                int need = (type == CLEAR) ? 0 : (type == REMOVE) ? 4 : 20;
+                if (bytes.remaining() < need)
+                    break;
+
+                int i = (type == CLEAR) ? 0 : bytes.getInt();
+                if (i < 0 || i > size || (i == size && type != ADD && type != CLEAR))
+                    throw new IOException(path + ": record of point " + i + " of " + size);
+
+                if (type == ADD)
+                    insert(i, bytes.getDouble(), bytes.getDouble());
+                else if (type == REMOVE)
+                    delete(i);
+                else if (type == MOVE) {
+                    x[i] = bytes.getDouble();
+                    y[i] = bytes.getDouble();
+                } else if (type == CLEAR)
+                    size = 0;
+                else
+                    throw new IOException(path + ": unknown record " + type);
+            }
+        }
+    }
+
+    private static long header(ByteBuffer bytes, Path path) throws IOException {
+        if (bytes.remaining() < HEADER || bytes.getInt() != MAGIC)
+            throw new IOException(path + ": not a session file");
+        if (bytes.getInt() != VERSION)
+            throw new IOException(path + ": unknown version");
+        return bytes.getLong();
+    }
+
+    private void insert(int i, double px, double py) {
+        if (size == x.length) {
+            x = Arrays.copyOf(x, 2 * size);
+            y = Arrays.copyOf(y, 2 * size);
+        }
+        System.arraycopy(x, i, x, i + 1, size - i);
+        System.arraycopy(y, i, y, i + 1, size - i);
+        x[i] = px;
+        y[i] = py;
+        size++;
+    }
+
+    private void delete(int i) {
+        System.arraycopy(x, i + 1, x, i, size - i - 1);
+        System.arraycopy(y, i + 1, y, i, size - i - 1);
+        size--;
+    }
+}
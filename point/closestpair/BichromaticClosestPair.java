@@ -0,0 +1,65 @@
+package point.closestpair;
+
+import point.delaunay.DelaunayTriangulation;
+
+/**
+ * A class that finds the closest pair of points between two sets, one
+ * red and one blue, where only pairs of a red and a blue point count.
+ *
+ * The closest such pair is always an edge of the Delaunay triangulation
+ * of both sets together: if a third point were inside the circle that
+ * has the pair as its diameter, it would be closer to both points of the
+ * pair, and whatever its colour, it would form a closer red and blue
+ * pair with one of them. So the two sets are triangulated together in
+ * O((n + m) log(n + m)) time, and only the edges between the two colours
+ * are looked at.
+ */
+public final class BichromaticClosestPair {
+
+    private BichromaticClosestPair() {
+    }
+
+    /**
+     * Finds the closest pair of a red and a blue point.
+     *
+     * @param redX  the x-coordinates of the red points
+     * @param redY  the y-coordinates of the red points
+     * @param blueX the x-coordinates of the blue points
+     * @param blueY the y-coordinates of the blue points
+     * @return the index of the red point and the index of the blue point
+     */
+    public static int[] find(double[] redX, double[] redY, double[] blueX, double[] blueY) {
+        if (redX.length != redY.length || blueX.length != blueY.length)
+            throw new IllegalArgumentException("x.length != y.length");
+        if (redX.length == 0 || blueX.length == 0)
+            throw new IllegalArgumentException("empty set");
+
+        // the red points first, then the blue ones
+        int n = redX.length, m = blueX.length;
+        double[] x = new double[n + m];
+        double[] y = new double[n + m];
+        System.arraycopy(redX, 0, x, 0, n);
+        System.arraycopy(redY, 0, y, 0, n);
+        System.arraycopy(blueX, 0, x, n, m);
+        System.arraycopy(blueY, 0, y, n, m);
+
+        DelaunayTriangulation triangulation = new DelaunayTriangulation(x, y);
+        int red = -1, blue = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int e = 0; e < triangulation.numOfEdges(); e++) {
+            int a = triangulation.edgeFrom(e), b = triangulation.edgeTo(e);
+            if ((a < n) == (b < n))
+                continue;
+
+            double dx = x[a] - x[b], dy = y[a] - y[b];
+            double d = dx * dx + dy * dy;
+            if (d < best) {
+                best = d;
+                red = Math.min(a, b);
+                blue = Math.max(a, b) - n;
+            }
+        }
+
+        return new int[] {red, blue};
+    }
+}
@@ -1,6 +1,7 @@
 package point.closestpair;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -11,7 +12,17 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.stage.Stage;
+import point.Metric;
 import point.Point;
+import point.SessionJournal;
+import point.replay.ScriptRecorder;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Created by Z on 08.26.
@@ -22,9 +33,31 @@ import point.Point;
  * This program finds the closest pair of points on a plane using
  * a divide-and-conquer algorithm. A JavaFX UI is provided to allow
  * the user to plot, to see the closest pair visually, etc.
+ * <p>
+ * When it is started with --session=path, the points are saved to a
+ * session journal at that path as they are plotted, and the points
+ * saved there before are plotted again.
+ * <p>
+ * When it is started with --record=path, what is done on the pane is
+ * recorded to a script at that path, for InteractionReplay to play back.
  */
 public class ClosestPair extends Application {
 
+    // the journal of the session, if one is given
+    private SessionJournal session;
+
+    // the recorder of the script, if one is given
+    private ScriptRecorder recorder;
+
+    // brings the moving points and the session up to date every second,
+    // on a thread of its own rather than as an animation, which would keep
+    // the pulses of the scene running
+    private final ScheduledExecutorService updates = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "updates");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @Override
     public void start(Stage primaryStage) {
         ///////////////////////////// Nodes /////////////////////////////
@@ -38,6 +71,9 @@ public class ClosestPair extends Application {
         // user optional controls
         CheckBox ckbAxes = new CheckBox("Axes");
         CheckBox ckbAutoSolve = new CheckBox("Auto-solve");
+        CheckBox ckbRedBlue = new CheckBox("Red/Blue");
+        CheckBox ckbMoving = new CheckBox("Moving");
+        ComboBox<Metric> cbMetric = new ComboBox<>();
 
         // closest pair information
         TextField tfClosest = new TextField();
@@ -54,12 +90,16 @@ public class ClosestPair extends Application {
 
         list.setStyle("-fx-font-size: 14");
         list.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
+        list.setCellFactory(view -> new PointListCell());
 
         HBox top = new HBox(5);
         top.setAlignment(Pos.CENTER);
         top.setPadding(new Insets(0, 5, 5, 5));
         top.getChildren().addAll(ckbAxes, ckbAutoSolve);
 
+        cbMetric.getItems().addAll(Metric.values());
+        cbMetric.setValue(pane.getMetric());
+
         tfClosest.setEditable(false);
         tfDistance.setEditable(false);
 
@@ -75,7 +115,7 @@ public class ClosestPair extends Application {
 
         HBox checkBoxes = new HBox(5);
         checkBoxes.setAlignment(Pos.CENTER);
-        checkBoxes.getChildren().addAll(ckbAxes, ckbAutoSolve);
+        checkBoxes.getChildren().addAll(ckbAxes, ckbAutoSolve, ckbRedBlue, ckbMoving, cbMetric);
 
         HBox buttons = new HBox(5);
         buttons.setPadding(new Insets(5, 0, 0, 0));
@@ -97,57 +137,94 @@ public class ClosestPair extends Application {
 
         ///////////////////////////// Events /////////////////////////////
 
+        // shows the closest pair found last, or nothing if there is none
+        Runnable showClosest = () -> {
+            if (pane.getClosest() != null) {
+                tfClosest.setText(pane.getClosest().toString());
+                tfDistance.setText(String.format("%.2f", pane.getClosest().distance()));
+            } else {
+                tfClosest.setText("");
+                tfDistance.setText("");
+            }
+        };
+
+        // the events of the circle of a point: it is removed when right-clicked,
+        // moved to the other set when shift-clicked, dragged to move its point,
+        // and highlighted when the mouse is on it
+        Consumer<Circle> handleCircle = c -> {
+            c.setOnMouseClicked(mouse -> {
+                int index = pane.indexOf(c);
+
+                // remove if the circle is right-clicked
+                if (mouse.getButton() == MouseButton.SECONDARY) {
+                    record("remove", index);
+                    pane.remove(index);
+                }
+
+                // in the red and blue mode, move the point to the other set
+                // if the circle is shift-clicked, without the pane adding a
+                // point where it was clicked
+                if (mouse.getButton() == MouseButton.PRIMARY && mouse.isShiftDown() && pane.isBichromatic()) {
+                    record("toggle", index);
+                    pane.setBlue(index, !pane.isBlue(index));
+                    showClosest.run();
+                    mouse.consume();
+                }
+            });
+
+            // When the circle is dragged, move to wherever it's dragged to and,
+            // if auto-solve is on, solve for the closest pair as the circle is
+            // dragged in case the position of the pair or the pair itself has
+            // changed during dragging.
+            // The mouse position is given in world coordinates, since the
+            // circle is drawn in the zoomed and panned plot.
+            c.setOnMouseDragged(mouse -> {
+                double x = pane.toScreenX(mouse.getX());
+                double y = pane.toScreenY(mouse.getY());
+                record("drag", pane.indexOf(c), x, y);
+                if (x <= pane.getWidth() - 5 && x >= 5)
+                    c.setCenterX(mouse.getX());
+                if (y <= pane.getHeight() - 5 && y >= 5)
+                    c.setCenterY(mouse.getY());
+
+                if (pane.isAutoSolve())
+                    pane.solve();
+                else
+                    pane.removeClosestLine();
+            });
+
+            // When the mouse enters the circle, change the border of the circle
+            // to black and the color to sky blue, and select the interacting
+            // circle in the list view.
+            c.setOnMouseEntered(mouse -> {
+                c.setStroke(Color.BLACK);
+                c.setFill(Color.SKYBLUE);
+
+                int index = pane.indexOf(c);
+                list.getSelectionModel().select(index);
+                list.scrollTo(index);
+            });
+
+            // When the mouse is not in the circle, set the border of the circle
+            // to white and the color back to that of its set, and clear all
+            // selections of the list view.
+            c.setOnMouseExited(mouse -> {
+                c.setStroke(Color.WHITE);
+                c.setFill(pane.colorOf(pane.indexOf(c)));
+                list.getSelectionModel().clearSelection();
+            });
+        };
+
         // when the pane is clicked, trigger the following
         pane.setOnMouseClicked(event -> {
             if (event.getButton() == MouseButton.PRIMARY) {
+                record("click", event.getX(), event.getY());
+
                 // add a point located at the position of the mouse
-                pane.add(event.getX(), event.getY());
-
-                // create a visual circle for the point and set its events
-                Circle c = pane.getCircles().get(pane.numOfPoints() - 1);
-                c.setOnMouseClicked(mouse -> {
-                    // remove if the circle is right-clicked
-                    if (mouse.getButton() == MouseButton.SECONDARY)
-                        pane.remove(pane.getCircles().indexOf(c));
-                });
-
-                // When the circle is dragged, move to wherever it's dragged to and,
-                // if auto-solve is on, solve for the closest pair as the circle is
-                // dragged in case the position of the pair or the pair itself has
-                // changed during dragging.
-                c.setOnMouseDragged(mouse -> {
-                    if (mouse.getX() <= pane.getWidth() - 5 && mouse.getX() >= 5)
-                        c.setCenterX(mouse.getX());
-                    if (mouse.getY() <= pane.getHeight() - 5 && mouse.getY() >= 5)
-                        c.setCenterY(mouse.getY());
-
-                    if (pane.isAutoSolve())
-                        pane.solve();
-                    else
-                        pane.removeClosestLine();
-                });
-
-                // When the mouse enters the circle, change the border of the circle
-                // to black and the color to sky blue, and select the interacting
-                // circle in the list view.
-                c.setOnMouseEntered(mouse -> {
-                    c.setStroke(Color.BLACK);
-                    c.setFill(Color.SKYBLUE);
-
-                    int index = pane.getCircles().indexOf(c);
-                    list.getSelectionModel().select(pane.getPoints().get(index));
-                    list.scrollTo(index);
-                });
-
-                // When the mouse is not in the circle, set the border of the circle
-                // to white and the color to dark slate gray, and clear all selections
-                // of the list view.
-                c.setOnMouseExited(mouse -> {
-                    c.setStroke(Color.WHITE);
-                    c.setFill(Color.DARKSLATEGRAY);
-                    list.getSelectionModel().clearSelection();
-                });
+                pane.add(pane.toWorldX(event.getX()), pane.toWorldY(event.getY()));
 
+                // set the events of the circle for the point
+                handleCircle.accept(pane.getCircles().get(pane.numOfPoints() - 1));
 
                 if (pane.isAutoSolve() && pane.getClosest() != null) {
                     tfClosest.setText(pane.getClosest().toString());
@@ -165,10 +242,9 @@ public class ClosestPair extends Application {
                 btClear.fire();
         });
 
-        // when the mouse is dragged, refresh the list view to update the positions
-        // and update the closest pair information
+        // when the mouse is dragged, update the closest pair information; the
+        // rows of the list view follow their own points
         pane.setOnMouseDragged(event -> {
-            list.refresh();
             if (pane.isAutoSolve() && pane.getClosest() != null) {
                 tfClosest.setText(pane.getClosest().toString());
                 tfDistance.setText(String.format("%.2f", pane.getClosest().distance()));
@@ -181,24 +257,68 @@ public class ClosestPair extends Application {
 
         // when the auto-solve check box is selected/unselected, change the auto-solve
         // mode to the corresponding condition.
+        // The solve is part of the action, so it is not recorded on its own.
         ckbAutoSolve.setOnAction(event -> {
+            record("auto " + (ckbAutoSolve.isSelected() ? "on" : "off"));
             pane.setAutoSolve(ckbAutoSolve.isSelected());
-            btSolve.fire();
+            pane.solve();
+            showClosest.run();
+        });
+
+        // when the red/blue check box is selected/unselected, switch between the
+        // closest pair of all points and the closest pair of a red and a blue point.
+        // The red/blue pair is Euclidean, so the metric is set back and cannot be
+        // changed while it is shown
+        ckbRedBlue.setOnAction(event -> {
+            boolean redBlue = ckbRedBlue.isSelected();
+            if (redBlue)
+                cbMetric.setValue(Metric.EUCLIDEAN);
+            cbMetric.setDisable(redBlue || ckbMoving.isSelected());
+
+            record("redblue " + (redBlue ? "on" : "off"));
+            pane.setBichromatic(redBlue);
+            showClosest.run();
+        });
+
+        // when the moving check box is selected/unselected, start/stop moving the
+        // points and following their closest pair. The pair followed is the
+        // Euclidean one of all the points, so red/blue and the metric are
+        // set back and cannot be changed while the points move
+        ckbMoving.setOnAction(event -> {
+            boolean moving = ckbMoving.isSelected();
+            if (moving && ckbRedBlue.isSelected())
+                ckbRedBlue.fire();
+            if (moving)
+                cbMetric.setValue(Metric.EUCLIDEAN);
+            ckbRedBlue.setDisable(moving);
+            cbMetric.setDisable(moving || ckbRedBlue.isSelected());
+
+            record("moving " + (moving ? "on" : "off"));
+            if (recorder != null)
+                recorder.setAnimating(moving);
+            pane.setMoving(moving);
+            showClosest.run();
+        });
+
+        // when a metric is chosen, measure the distances in it
+        cbMetric.setOnAction(event -> {
+            record("metric " + cbMetric.getValue().name());
+            pane.setMetric(cbMetric.getValue());
+            showClosest.run();
         });
 
         // when the solve button is clicked, solve for the closest pair and update
         // the information of the closest pair
         btSolve.setOnAction(event -> {
+            record("solve");
             pane.solve();
-            if (pane.getClosest() != null) {
-                tfClosest.setText(pane.getClosest().toString());
-                tfDistance.setText(String.format("%.2f", pane.getClosest().distance()));
-            }
+            showClosest.run();
         });
 
         // when the clear button is clicked, remove all points on the pane and clear
         // the closest pair information
         btClear.setOnAction(event -> {
+            record("clear");
             pane.clear();
             tfClosest.setText("");
             tfDistance.setText("");
@@ -206,7 +326,51 @@ public class ClosestPair extends Application {
 
         // when the print is clicked, print all the existing points on the pane in
         // console.
-        btPrint.setOnAction(event -> System.out.println(pane.getPoints()));
+        btPrint.setOnAction(event -> {
+            pane.updatePositions();
+            System.out.println(pane.getPoints());
+        });
+
+        // every second, while the points move, put those off the pane where
+        // they are by now, for the list view, and show how far apart the
+        // pair is by now; then write what was done to the session, so that
+        // a crash loses at most a second of it
+        updates.scheduleWithFixedDelay(() -> Platform.runLater(() -> {
+            if (pane.isMoving()) {
+                pane.updatePositions();
+                showClosest.run();
+            }
+            if (session != null) {
+                try {
+                    session.flush();
+                } catch (IOException e) {
+                    System.err.println("Cannot save session: " + e.getMessage());
+                    session = null;
+                }
+            }
+        }), 1, 1, TimeUnit.SECONDS);
+
+        // open the session, if one is given, and plot its points
+        String path = getParameters().getNamed().get("session");
+        if (path != null) {
+            try {
+                session = SessionJournal.open(Paths.get(path));
+                session.restore(pane);
+                pane.getCircles().forEach(handleCircle);
+            } catch (IOException e) {
+                System.err.println("Cannot open session " + path + ": " + e.getMessage());
+            }
+        }
+
+        // record to the script, if one is given
+        String script = getParameters().getNamed().get("record");
+        if (script != null) {
+            try {
+                recorder = new ScriptRecorder(Paths.get(script), "closest", pane);
+            } catch (IOException e) {
+                System.err.println("Cannot record to " + script + ": " + e.getMessage());
+            }
+        }
 
         ///////////////////////////// Root /////////////////////////////
 
@@ -223,4 +387,23 @@ public class ClosestPair extends Application {
 
         pane.requestFocus();
     }
+
+    // records an action, if a script is being recorded
+    private void record(String action, double... args) {
+        if (recorder != null)
+            recorder.record(action, args);
+    }
+
+    /**
+     * Close the session and the script, if they are open, so that the
+     * last changes are written to them.
+     */
+    @Override
+    public void stop() throws IOException {
+        updates.shutdownNow();
+        if (session != null)
+            session.close();
+        if (recorder != null)
+            recorder.close();
+    }
 }
@@ -0,0 +1,219 @@
+package point.closestpair;
+
+import point.IndexSort;
+import point.Metric;
+import point.PointKernels;
+
+/**
+ * A class that finds the closest pair of points with the same
+ * divide-and-conquer algorithm as ClosestPairPane, written over
+ * primitive coordinate arrays so that it can be used without a UI and
+ * on millions of points. The points are sorted on x once, and every
+ * half is sorted on y by merging its own halves on the way back up,
+ * so the whole search takes O(n log n) time. Distances are compared
+ * squared, or in the compared values of another metric; the strip is
+ * scanned with a loop of its own for every metric.
+ */
+public final class ClosestPairFinder {
+
+    // the points in x-major order; each range is put in y order once solved
+    private final double[] x;
+    private final double[] y;
+    private final int[] id;
+
+    // buffers for merging and for the strip around the middle
+    private final double[] bx;
+    private final double[] by;
+    private final int[] bid;
+
+    private final Metric metric;
+
+    // the closest pair found so far and its compared distance
+    private double best = Double.POSITIVE_INFINITY;
+    private int first = -1;
+    private int second = -1;
+
+    private ClosestPairFinder(double[] x, double[] y, Metric metric) {
+        this.metric = metric;
+        int n = x.length;
+        int[] order = IndexSort.sort(n, x, y);
+
+        this.x = new double[n];
+        this.y = new double[n];
+        this.id = order;
+        for (int i = 0; i < n; i++) {
+            this.x[i] = x[order[i]];
+            this.y[i] = y[order[i]];
+        }
+
+        bx = new double[n];
+        by = new double[n];
+        bid = new int[n];
+    }
+
+    /**
+     * Finds the closest pair of the points with the given coordinates.
+     *
+     * @param x the x-coordinates of the points
+     * @param y the y-coordinates of the points
+     * @return the indices of the two points
+     */
+    public static int[] find(double[] x, double[] y) {
+        return find(x, y, Metric.EUCLIDEAN);
+    }
+
+    /**
+     * Finds the closest pair of the points with the given coordinates in
+     * the given metric.
+     *
+     * @param x      the x-coordinates of the points
+     * @param y      the y-coordinates of the points
+     * @param metric the metric
+     * @return the indices of the two points
+     */
+    public static int[] find(double[] x, double[] y, Metric metric) {
+        if (x.length != y.length)
+            throw new IllegalArgumentException("x.length != y.length");
+        if (x.length < 2)
+            throw new IllegalArgumentException("size < 2");
+
+        ClosestPairFinder finder = new ClosestPairFinder(x, y, metric);
+        finder.solve(0, x.length);
+        return new int[] {finder.first, finder.second};
+    }
+
+    // finds the closest pair in [lo, hi) and sorts the range on y
+    private void solve(int lo, int hi) {
+        if (hi - lo <= 3) {
+            for (int i = lo; i < hi; i++)
+                for (int j = i + 1; j < hi; j++)
+                    check(i, j);
+            sortOnY(lo, hi);
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        double midX = x[mid];
+        solve(lo, mid);
+        solve(mid, hi);
+        merge(lo, mid, hi);
+
+        // the points closer to the dividing line than the best distance, on y
+        int m = 0;
+        for (int i = lo; i < hi; i++) {
+            if (within(x[i] - midX)) {
+                bx[m] = x[i];
+                by[m] = y[i];
+                bid[m++] = id[i];
+            }
+        }
+
+        for (int s = 0; s < m; s++) {
+            // only the points above s within the best distance on y
+            int end = s + 1;
+            while (end < m && within(by[end] - by[s]))
+                end++;
+
+            int q = nearest(metric, bx, by, s + 1, end, bx[s], by[s]);
+            if (q >= 0) {
+                double d = metric.compared(bx[q] - bx[s], by[q] - by[s]);
+                if (d < best) {
+                    best = d;
+                    first = bid[s];
+                    second = bid[q];
+                }
+            }
+        }
+    }
+
+    // true if points this far apart on one coordinate may be closer than the best pair
+    private boolean within(double d) {
+        return (metric == Metric.EUCLIDEAN) ? d * d < best : Math.abs(d) < best;
+    }
+
+    /**
+     * Returns the index in [from, to) of the point nearest to (px, py) in
+     * the given metric, the smallest one if there is a tie, or -1 if the
+     * range is empty. The Euclidean scan is left to PointKernels, and the
+     * others are written out below, so that each loop only ever sees one
+     * metric.
+     */
+    static int nearest(Metric metric, double[] x, double[] y, int from, int to, double px, double py) {
+        switch (metric) {
+            case MANHATTAN:
+                return nearestManhattan(x, y, from, to, px, py);
+            case CHEBYSHEV:
+                return nearestChebyshev(x, y, from, to, px, py);
+            default:
+                return PointKernels.get().nearest(x, y, from, to, px, py);
+        }
+    }
+
+    private static int nearestManhattan(double[] x, double[] y, int from, int to, double px, double py) {
+        int nearest = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            double d = Math.abs(x[i] - px) + Math.abs(y[i] - py);
+            if (d < best) {
+                best = d;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    private static int nearestChebyshev(double[] x, double[] y, int from, int to, double px, double py) {
+        int nearest = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            double d = Math.max(Math.abs(x[i] - px), Math.abs(y[i] - py));
+            if (d < best) {
+                best = d;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    private void check(int i, int j) {
+        double d = metric.compared(x[i] - x[j], y[i] - y[j]);
+        if (d < best) {
+            best = d;
+            first = id[i];
+            second = id[j];
+        }
+    }
+
+    // an insertion sort on y for the smallest ranges
+    private void sortOnY(int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            for (int j = i; j > lo && y[j] < y[j - 1]; j--) {
+                swap(x, j, j - 1);
+                swap(y, j, j - 1);
+                int t = id[j];
+                id[j] = id[j - 1];
+                id[j - 1] = t;
+            }
+        }
+    }
+
+    // merges the ranges [lo, mid) and [mid, hi), both sorted on y
+    private void merge(int lo, int mid, int hi) {
+        int i = lo, j = mid, k = 0;
+        while (i < mid || j < hi) {
+            int p = (j == hi || (i < mid && y[i] <= y[j])) ? i++ : j++;
+            bx[k] = x[p];
+            by[k] = y[p];
+            bid[k++] = id[p];
+        }
+        System.arraycopy(bx, 0, x, lo, k);
+        System.arraycopy(by, 0, y, lo, k);
+        System.arraycopy(bid, 0, id, lo, k);
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
@@ -1,13 +1,20 @@
 package point.closestpair;
 
+import javafx.animation.AnimationTimer;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
+import point.IndexSort;
 import point.PlotPane;
+import point.Metric;
 import point.Point;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * Created by Z on 09.01.
@@ -31,32 +38,43 @@ public class ClosestPairPane extends PlotPane {
     static final class Pair {
 
         /**
-         * The pair of points.
+         * The pair of points, and the metric they are measured in.
          */
         private Point p1;
         private Point p2;
+        private final Metric metric;
 
         /**
          * Constructs a pair with the given two points.
          *
          * @param p1 point 1
          * @param p2 point 2
+         * @param metric the metric of the distance
          */
-        private Pair(Point p1, Point p2) {
+        private Pair(Point p1, Point p2, Metric metric) {
             this.p1 = p1;
             this.p2 = p2;
+            this.metric = metric;
         }
 
         /**
-         * Returns the distance from p1 to p2, calculated using the
-         * Pythagorean Theorem.
+         * Returns the distance from p1 to p2 in the metric of this pair.
          *
          * @return the distance between this pair of points
          */
         double distance() {
-            double dx = Math.abs(p1.getX() - p2.getX());
-            double dy = Math.abs(p1.getY() - p2.getY());
-            return Math.sqrt(dx * dx + dy * dy);
+            return metric.distance(p1, p2);
+        }
+
+        /**
+         * Returns the compared value of the distance, which is the
+         * squared distance for the Euclidean metric.
+         *
+         * @return the value to compare pairs by
+         * @see Metric#compared(double, double)
+         */
+        double compared() {
+            return metric.compared(p1.getX() - p2.getX(), p1.getY() - p2.getY());
         }
 
         /**
@@ -101,8 +119,27 @@ public class ClosestPairPane extends PlotPane {
     @Override
     public void add(Point p) {
         super.add(p);
+        if (bichromatic)
+            circles.get(numOfPoints() - 1).setFill(colorOf(numOfPoints() - 1));
         if (autoSolve)
             solve();
+        pointsChanged();
+    }
+
+    /**
+     * Call addAll(double[], double[]) in superclass and solve again once
+     * if autoSolve is on.
+     *
+     * @see PlotPane#addAll(double[], double[])
+     */
+    @Override
+    public void addAll(double[] x, double[] y) {
+        super.addAll(x, y);
+        if (bichromatic)
+            recolor();
+        if (autoSolve && numOfPoints() >= 2)
+            solve();
+        pointsChanged();
     }
 
     /**
@@ -113,14 +150,19 @@ public class ClosestPairPane extends PlotPane {
      */
     @Override
     public void remove(int index) {
+        if (index >= 0) {
+            blue.remove(points.get(index));
+            velocity.remove(points.get(index));
+        }
         super.remove(index);
 
         // in case the removing point is one of the points in closest
-        getChildren().remove(closestLine);
+        getPlotChildren().remove(closestLine);
 
         // solve for closest if it's on auto-solve
         if (autoSolve)
             solve();
+        pointsChanged();
     }
 
     /**
@@ -130,8 +172,85 @@ public class ClosestPairPane extends PlotPane {
      */
     @Override
     public void clear() {
+        halt();
         super.clear();
+        blue.clear();
+        velocity.clear();
         closest = null;
+        pointsChanged();
+    }
+
+    /**
+     * Provide a red and blue mode, where every point belongs to one of
+     * two sets and the closest pair is the closest one of a red and a
+     * blue point. Points are red unless they are put in the blue set.
+     * The red and blue pair is always measured in the Euclidean metric.
+     * A getter and a setter is provided as well.
+     */
+    private boolean bichromatic;
+
+    // the points in the blue set
+    private final Set<Point> blue = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public boolean isBichromatic() {
+        return bichromatic;
+    }
+
+    public void setBichromatic(boolean bichromatic) {
+        this.bichromatic = bichromatic;
+        recolor();
+
+        // the old pair may not be one of a red and a blue point
+        getPlotChildren().remove(closestLine);
+        closest = null;
+        if (autoSolve)
+            solve();
+    }
+
+    /**
+     * Returns true if the point of the given index is in the blue set.
+     *
+     * @param index the index of the point
+     * @return true if the point is blue; false if it is red
+     */
+    public boolean isBlue(int index) {
+        return blue.contains(points.get(index));
+    }
+
+    /**
+     * Puts the point of the given index in the blue or the red set.
+     *
+     * @param index the index of the point
+     * @param isBlue true to put it in the blue set; false for the red one
+     */
+    public void setBlue(int index, boolean isBlue) {
+        if (isBlue)
+            blue.add(points.get(index));
+        else
+            blue.remove(points.get(index));
+        circles.get(index).setFill(colorOf(index));
+
+        if (autoSolve)
+            solve();
+    }
+
+    /**
+     * Returns the colour that the point of the given index is drawn in,
+     * which is the colour of its set in the red and blue mode.
+     *
+     * @param index the index of the point
+     * @return the colour of the point
+     */
+    public Color colorOf(int index) {
+        if (!bichromatic)
+            return Color.DARKSLATEGRAY;
+        return isBlue(index) ? Color.ROYALBLUE : Color.CRIMSON;
+    }
+
+    // draws every circle in the colour of its point
+    private void recolor() {
+        for (int i = 0; i < circles.size(); i++)
+            circles.get(i).setFill(colorOf(i));
     }
 
     /**
@@ -152,7 +271,7 @@ public class ClosestPairPane extends PlotPane {
     private Line closestLine;
 
     public void removeClosestLine() {
-        getChildren().remove(closestLine);
+        getPlotChildren().remove(closestLine);
     }
 
     /**
@@ -162,20 +281,81 @@ public class ClosestPairPane extends PlotPane {
         // only solve when points.size > 1 so that no unnecessary error
         // will be triggered (IllegalArgumentException in findClosest())
         if (points.size() > 1) {
-            getChildren().remove(closestLine); // remove closestLine
-            closest = findClosest(points); // find the closest
-
-            // reset the position of closestLine
-            closestLine = new Line(closest.p1.getX(), closest.p1.getY(),
-                    closest.p2.getX(), closest.p2.getY());
-            closestLine.setStroke(Color.DARKSLATEGRAY);
-            closestLine.startXProperty().bind(closest.p1.xProperty());
-            closestLine.startYProperty().bind(closest.p1.yProperty());
-            closestLine.endXProperty().bind(closest.p2.xProperty());
-            closestLine.endYProperty().bind(closest.p2.yProperty());
-
-            getChildren().add(closestLine); // add it back to the pane
+            getPlotChildren().remove(closestLine); // remove closestLine
+
+            // find the closest
+            if (!bichromatic)
+                closest = findClosest(points, metric);
+            else if ((closest = findClosestRedBlue()) == null)
+                return;
+
+            drawClosestLine();
+        }
+    }
+
+    // draws closestLine between the closest pair again; the line is bound
+    // to the points, so it follows them as they move
+    private void drawClosestLine() {
+        getPlotChildren().remove(closestLine);
+
+        // reset the position of closestLine
+        closestLine = new Line(closest.p1.getX(), closest.p1.getY(),
+                closest.p2.getX(), closest.p2.getY());
+        closestLine.setStroke(Color.DARKSLATEGRAY);
+        closestLine.startXProperty().bind(closest.p1.xProperty());
+        closestLine.startYProperty().bind(closest.p1.yProperty());
+        closestLine.endXProperty().bind(closest.p2.xProperty());
+        closestLine.endYProperty().bind(closest.p2.yProperty());
+
+        getPlotChildren().add(closestLine); // add it back to the pane
+    }
+
+    // finds the closest pair of a red and a blue point, or null if one
+    // of the sets is empty
+    private Pair findClosestRedBlue() {
+        int m = blue.size(), n = points.size() - m;
+        if (n == 0 || m == 0)
+            return null;
+
+        double[] redX = new double[n], redY = new double[n];
+        double[] blueX = new double[m], blueY = new double[m];
+        List<Point> red = new ArrayList<>(n), blues = new ArrayList<>(m);
+        for (Point p : points) {
+            if (blue.contains(p)) {
+                blueX[blues.size()] = p.getX();
+                blueY[blues.size()] = p.getY();
+                blues.add(p);
+            } else {
+                redX[red.size()] = p.getX();
+                redY[red.size()] = p.getY();
+                red.add(p);
+            }
         }
+
+        int[] pair = BichromaticClosestPair.find(redX, redY, blueX, blueY);
+        return new Pair(red.get(pair[0]), blues.get(pair[1]), Metric.EUCLIDEAN);
+    }
+
+    /**
+     * The metric that the closest pair is found in, Euclidean unless it
+     * is set. The red and blue pair is always Euclidean, as it is found
+     * on the Delaunay triangulation. A getter and a setter is provided
+     * as well.
+     */
+    private Metric metric = Metric.EUCLIDEAN;
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    public void setMetric(Metric metric) {
+        this.metric = metric;
+
+        // the old pair may not be the closest in the new metric
+        getPlotChildren().remove(closestLine);
+        closest = null;
+        if (autoSolve)
+            solve();
     }
 
     /**
@@ -197,32 +377,278 @@ public class ClosestPairPane extends PlotPane {
             solve();
     }
 
+    /**
+     * Provide a moving mode, a demo of KineticClosestPair: every point
+     * moves in a straight line with a velocity of its own and bounces
+     * off the sides of the pane, and the closest pair is followed as the
+     * points move instead of being solved again for every frame. The
+     * pair followed is the Euclidean closest pair of all the points.
+     * A getter and a setter is provided as well.
+     */
+    private boolean moving;
+
+    // the pair being followed, the points in the order it has them, the
+    // animation that moves them, and whether points were added or
+    // removed since the pair was followed
+    private KineticClosestPair kinetic;
+    private List<Point> moved;
+    private AnimationTimer animation;
+    private boolean outdated;
+
+    // whether the points are moved by the animation, or only by
+    // advanceMoving()
+    private boolean animated = true;
+
+    // the velocity of every point in world units per second, kept when
+    // the points are stopped or the pair is followed again
+    private final Map<Point, double[]> velocity = new IdentityHashMap<>();
+    private final Random random = new Random();
+
+    public boolean isMoving() {
+        return moving;
+    }
+
+    public void setMoving(boolean moving) {
+        this.moving = moving;
+        if (moving)
+            startMoving();
+        else
+            stopMoving();
+    }
+
+    public boolean isAnimated() {
+        return animated;
+    }
+
+    /**
+     * Sets whether the points of the moving mode are moved by an
+     * animation in every pulse, as they are by default, or only by
+     * advanceMoving(), as InteractionReplay does without a running
+     * JavaFX toolkit.
+     *
+     * @param animated true to move the points in every pulse
+     */
+    public void setAnimated(boolean animated) {
+        this.animated = animated;
+        if (moving)
+            startMoving();
+    }
+
+    /**
+     * Moves the points of the moving mode on by the given time, as the
+     * animation does in every frame. Nothing happens if they are not
+     * moving.
+     *
+     * @param seconds the time to move the points by
+     */
+    public void advanceMoving(double seconds) {
+        if (!moving)
+            return;
+        if (outdated)
+            follow();
+        if (kinetic != null)
+            moveTo(kinetic.time() + seconds);
+    }
+
+    /**
+     * Moves every moving point to where it is by now. A frame only moves
+     * the points that are seen, so the others, in the list of points,
+     * are where they were last seen until this is called or the points
+     * stop. Nothing happens if the points are not moving.
+     */
+    public void updatePositions() {
+        if (kinetic == null)
+            return;
+        for (int i = 0; i < moved.size(); i++) {
+            moved.get(i).setX(kinetic.x(i));
+            moved.get(i).setY(kinetic.y(i));
+        }
+    }
+
+    // has the pair followed again, from where the points are then, in the
+    // next frame, so that many points added in one frame cost one rebuild
+    private void pointsChanged() {
+        if (moving)
+            outdated = true;
+    }
+
+    // follows the closest pair from where the points are now, and starts
+    // moving them in every pulse if they are animated
+    private void startMoving() {
+        stopMoving();
+        follow();
+        if (!animated)
+            return;
+
+        animation = new AnimationTimer() {
+            private long last = -1;
+
+            @Override
+            public void handle(long now) {
+                if (last >= 0)
+                    advanceMoving((now - last) / 1e9);
+                last = now;
+            }
+        };
+        animation.start();
+    }
+
+    // follows the closest pair of the points from where they are now
+    private void follow() {
+        halt();
+        outdated = false;
+        if (points.size() < 2)
+            return;
+
+        // the points bounce off the sides of the pane, or of the box
+        // around them if some are outside it
+        double minX = toWorldX(0), minY = toWorldY(0);
+        double maxX = toWorldX(getWidth()), maxY = toWorldY(getHeight());
+        for (Point p : points) {
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+        }
+        maxX = Math.max(maxX, minX + 1);
+        maxY = Math.max(maxY, minY + 1);
+        double speed = Math.max(maxX - minX, maxY - minY) / 10;
+
+        int n = points.size();
+        moved = new ArrayList<>(points);
+        double[] x = new double[n], y = new double[n];
+        double[] vx = new double[n], vy = new double[n];
+        for (int i = 0; i < n; i++) {
+            Point p = moved.get(i);
+            double[] v = velocity.get(p);
+            if (v == null) {
+                v = randomVelocity(speed);
+                velocity.put(p, v);
+            }
+            x[i] = p.getX();
+            y[i] = p.getY();
+            vx[i] = v[0];
+            vy[i] = v[1];
+        }
+
+        // points at one position with one velocity would be one point to
+        // KineticClosestPair, so such a point is given another velocity;
+        // the points are sorted by position, and only the points at one
+        // position are compared
+        int[] order = IndexSort.sort(n, x, y);
+        for (int lo = 0, hi; lo < n; lo = hi) {
+            for (hi = lo + 1; hi < n && x[order[hi]] == x[order[lo]] && y[order[hi]] == y[order[lo]]; hi++) {
+                int i = order[hi];
+                for (int k = lo; k < hi; k++) {
+                    int j = order[k];
+                    if (vx[i] == vx[j] && vy[i] == vy[j]) {
+                        double[] v = randomVelocity(speed);
+                        velocity.put(moved.get(i), v);
+                        vx[i] = v[0];
+                        vy[i] = v[1];
+                        k = lo - 1;
+                    }
+                }
+            }
+        }
+
+        kinetic = new KineticClosestPair(x, y, vx, vy, minX, minY, maxX, maxY);
+        closest = null;
+        showKineticPair();
+    }
+
+    private double[] randomVelocity(double speed) {
+        double angle = 2 * Math.PI * random.nextDouble();
+        return new double[] {speed * Math.cos(angle), speed * Math.sin(angle)};
+    }
+
+    // moves the points on to the given time since they were followed.
+    // Only the points that are seen, or were seen until now, and the
+    // pair are moved; the others are moved when they come back, by
+    // updatePositions() or when the points stop. The pane brings the
+    // viewport up to date once, in its next layout
+    private void moveTo(double time) {
+        kinetic.advance(time);
+
+        int[] pair = kinetic.closestPair();
+        for (int i = 0; i < moved.size(); i++) {
+            Point p = moved.get(i);
+            double x = kinetic.x(i), y = kinetic.y(i);
+            if (i == pair[0] || i == pair[1] || inViewport(x, y) || inViewport(p.getX(), p.getY())) {
+                p.setX(x);
+                p.setY(y);
+            }
+        }
+        showKineticPair();
+    }
+
+    // stops the animation and the points
+    private void stopMoving() {
+        if (animation != null)
+            animation.stop();
+        animation = null;
+        halt();
+        outdated = false;
+    }
+
+    // stops following the points, leaving them where they are by now
+    // with the velocities they have by now
+    private void halt() {
+        if (kinetic == null)
+            return;
+        updatePositions();
+        for (int i = 0; i < moved.size(); i++) {
+            double[] v = velocity.get(moved.get(i));
+            if (v != null) {
+                v[0] = kinetic.velocityX(i);
+                v[1] = kinetic.velocityY(i);
+            }
+        }
+        kinetic = null;
+        moved = null;
+    }
+
+    // shows the pair being followed as the closest pair, if it is not
+    // shown already
+    private void showKineticPair() {
+        int[] pair = kinetic.closestPair();
+        Point p1 = moved.get(pair[0]), p2 = moved.get(pair[1]);
+        if (closest == null || closest.p1 != p1 || closest.p2 != p2) {
+            closest = new Pair(p1, p2, Metric.EUCLIDEAN);
+            drawClosestLine();
+        }
+    }
+
     /**
      * Find the closest pair of points using a divide-and-conquer
      * algorithm in chapter 22 of the book. This method is not to
      * be used outside of this class.
      *
+     * Pairs are compared by their compared distances, so that for the
+     * Euclidean metric no square root is taken but one for each level.
+     *
      * @param points the list of points
+     * @param metric the metric to measure distances in
      * @return the pair of closest points
      */
-    private static Pair findClosest(List<Point> points) {
+    private static Pair findClosest(List<Point> points, Metric metric) {
         // special conditions
         if (points.size() <= 1) // if the list does not have a pair
             throw new IllegalArgumentException("size: 1");
         else if (points.size() == 2) // if the list has only one pair, return it
-            return new Pair(points.get(0), points.get(1));
+            return new Pair(points.get(0), points.get(1), metric);
         else if (points.size() == 3) { // if the list only has 3 points, return the closest
             // 3 pairs can be made from 3 points
-            Pair p1 = new Pair(points.get(0), points.get(1));
-            Pair p2 = new Pair(points.get(1), points.get(2));
-            Pair p3 = new Pair(points.get(0), points.get(2));
+            Pair p1 = new Pair(points.get(0), points.get(1), metric);
+            Pair p2 = new Pair(points.get(1), points.get(2), metric);
+            Pair p3 = new Pair(points.get(0), points.get(2), metric);
 
             // return the closest pair from the three
-            if (p1.distance() < p2.distance()) {
-                if (p1.distance() < p3.distance())
+            if (p1.compared() < p2.compared()) {
+                if (p1.compared() < p3.compared())
                     return p1;
                 return p3;
-            } else if (p2.distance() < p3.distance())
+            } else if (p2.compared() < p3.compared())
                 return p2;
             return p3;
         }
@@ -243,14 +669,15 @@ public class ClosestPairPane extends PlotPane {
         List<Point> s2 = pointsOrderedOnX.subList((pointsOrderedOnX.size() + 1) / 2, pointsOrderedOnX.size());
 
         // find the closest pairs in s1 and s2
-        Pair p1 = findClosest(s1);
-        double d1 = p1.distance();
-        Pair p2 = findClosest(s2);
-        double d2 = p2.distance();
+        Pair p1 = findClosest(s1, metric);
+        double d1 = p1.compared();
+        Pair p2 = findClosest(s2, metric);
+        double d2 = p2.compared();
 
         // compare the two closest pairs and get the closer one
-        double d = (d1 < d2) ? d1 : d2;
-        Pair closest = (d == d1) ? p1 : p2; // the current closest pair
+        double best = (d1 < d2) ? d1 : d2;
+        Pair closest = (best == d1) ? p1 : p2; // the current closest pair
+        double d = metric.toDistance(best); // the distance of the closest pair
 
         /////////////////////////////////////////////////////////////////////
         // Find the closest pair between a point in one half and a point   //
@@ -270,30 +697,37 @@ public class ClosestPairPane extends PlotPane {
                 stripR.add(p);
         }
 
+        // copy the coordinates of stripR so that the points near p can
+        // be scanned a vector at a time
+        double[] rx = new double[stripR.size()];
+        double[] ry = new double[stripR.size()];
+        for (int i = 0; i < rx.length; i++) {
+            rx[i] = stripR.get(i).getX();
+            ry[i] = stripR.get(i).getY();
+        }
+
         int r = 0; // the index of a point in stripR
         for (Point p : stripL) {
             // skip the points in stripR below p.getHeadY() - d
-            while (r < stripR.size() && stripR.get(r).getY() <= p.getY() - d)
+            while (r < rx.length && ry[r] <= p.getY() - d)
                 r++;
 
             int r1 = r;
-            while (r1 < stripR.size() && Math.abs(stripR.get(r1).getY() - p.getY()) <= d) {
-                // check if (p, q.get(r1)) is a possible closest pair
-                double distance = distance(p, stripR.get(r1));
-                if (distance < d) {
-                    d = distance;
-                    closest = new Pair(p, stripR.get(r1));
-                }
-
+            while (r1 < rx.length && Math.abs(ry[r1] - p.getY()) <= d)
                 r1++;
+
+            // check if p and the nearest of stripR[r..r1) is a possible closest pair
+            int q = ClosestPairFinder.nearest(metric, rx, ry, r, r1, p.getX(), p.getY());
+            if (q >= 0) {
+                double compared = metric.compared(rx[q] - p.getX(), ry[q] - p.getY());
+                if (compared < best) {
+                    best = compared;
+                    d = metric.toDistance(best);
+                    closest = new Pair(p, stripR.get(q), metric);
+                }
             }
         }
 
         return closest;
     }
-
-    // helper method for finding the closest pair
-    private static double distance(Point p1, Point p2) {
-        return new Pair(p1, p2).distance();
-    }
 }
@@ -0,0 +1,285 @@
+package point.closestpair;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Finds the closest pair of points that are range-partitioned on x over
+ * several worker processes, which talk to this coordinator over sockets.
+ *
+ * Every worker owns the points with x in its own range, finds their
+ * closest pair with ClosestPairFinder and reports its distance. The
+ * smallest of those distances, d, is sent back to every worker, which
+ * then sends only its points within d of the edges of its range, like
+ * stripL and stripR around mid in ClosestPairPane. A pair of points of
+ * different workers that is closer than d has both points in these
+ * strips, so the coordinator only searches the strips for a closer
+ * pair. Only the strips ever leave the workers.
+ *
+ * Usage: java point.closestpair.DistributedClosestPair [workers] [points per worker]
+ *
+ * The workers generate their points from a seed, standing in for data
+ * that already lives on them. Only the closest pair work is compared:
+ * each worker reports the time it takes to find its closest pair and the
+ * time it takes to pick its strips, and the distributed time is that of
+ * the slowest worker at each step, since they run at once, plus the time
+ * the coordinator takes to search the strips; the single process is
+ * timed after its points are generated. Each is the best of a few runs,
+ * so neither includes loading classes or compiling the code. The time
+ * from starting the workers to the closest pair, with the start of the
+ * JVMs and the sockets, is printed on its own. A worker that has not connected within
+ * CONNECT_TIMEOUT, for example because it died on the way, stops the
+ * run with an error naming it, rather than leaving it waiting.
+ */
+public class DistributedClosestPair {
+
+    // the width of the x-range and the height of the points of a worker
+    private static final double WIDTH = 1_000_000;
+    private static final double HEIGHT = 1_000_000;
+
+    // how long the coordinator waits for the next worker to connect, in milliseconds
+    private static final int CONNECT_TIMEOUT = 60_000;
+
+    // the runs each closest pair is timed over, taking the best
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 4 && args[0].equals("--worker")) {
+            work(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+
+        int workers = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int size = (args.length > 1) ? Integer.parseInt(args[1]) : 1_000_000;
+
+        ///////////////////// distributed over worker processes /////////////////////
+
+        long start = System.nanoTime();
+        long bytes = 0;
+        long solving = 0, picking = 0, searching = 0;
+        double[] best = {Double.POSITIVE_INFINITY, 0, 0, 0, 0};
+
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            List<Process> processes = new ArrayList<>();
+            for (int shard = 0; shard < workers; shard++) {
+                processes.add(new ProcessBuilder(
+                        System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                        "-cp", System.getProperty("java.class.path"),
+                        DistributedClosestPair.class.getName(), "--worker",
+                        String.valueOf(server.getLocalPort()), String.valueOf(shard), String.valueOf(size))
+                        .inheritIO()
+                        .start());
+            }
+
+            // every worker says which shard it has, then reports its closest pair
+            Socket[] sockets = new Socket[workers];
+            DataInputStream[] in = new DataInputStream[workers];
+            DataOutputStream[] out = new DataOutputStream[workers];
+            server.setSoTimeout(CONNECT_TIMEOUT);
+            for (int i = 0; i < workers; i++) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    throw new IOException(notConnected(sockets, processes), e);
+                }
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                int shard = input.readInt();
+                sockets[shard] = socket;
+                in[shard] = input;
+                out[shard] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            }
+
+            // the time of a worker comes first, and is not counted in the bytes
+            for (int shard = 0; shard < workers; shard++) {
+                solving = Math.max(solving, in[shard].readLong());
+                double[] local = new double[5];
+                for (int k = 0; k < local.length; k++)
+                    local[k] = in[shard].readDouble();
+                bytes += 4 + 8 * local.length;
+                if (local[0] < best[0])
+                    best = local;
+            }
+
+            // send the best distance and collect the strips along the edges
+            double d = best[0];
+            List<double[]> strips = new ArrayList<>();
+            int total = 0;
+            for (int shard = 0; shard < workers; shard++) {
+                out[shard].writeDouble(d);
+                out[shard].flush();
+                bytes += 8;
+            }
+            for (int shard = 0; shard < workers; shard++) {
+                picking = Math.max(picking, in[shard].readLong());
+                int count = in[shard].readInt();
+                double[] strip = new double[2 * count];
+                for (int k = 0; k < strip.length; k++)
+                    strip[k] = in[shard].readDouble();
+                strips.add(strip);
+                total += count;
+                bytes += 4 + 8 * strip.length;
+            }
+
+            // a pair in the strips closer than d is the closest pair
+            if (total > 1) {
+                double[] x = new double[total];
+                double[] y = new double[total];
+                int n = 0;
+                for (double[] strip : strips) {
+                    for (int k = 0; k < strip.length; k += 2) {
+                        x[n] = strip[k];
+                        y[n++] = strip[k + 1];
+                    }
+                }
+
+                int[] pair = null;
+                searching = Long.MAX_VALUE;
+                for (int run = 0; run < RUNS; run++) {
+                    long searchStart = System.nanoTime();
+                    pair = ClosestPairFinder.find(x, y);
+                    searching = Math.min(searching, System.nanoTime() - searchStart);
+                }
+                double distance = Math.hypot(x[pair[0]] - x[pair[1]], y[pair[0]] - y[pair[1]]);
+                if (distance < d)
+                    best = new double[] {distance, x[pair[0]], y[pair[0]], x[pair[1]], y[pair[1]]};
+            }
+
+            System.out.printf("%d workers of %d points%n", workers, size);
+            System.out.printf("strip points:       %d%n", total);
+
+            for (Socket socket : sockets)
+                socket.close();
+            for (Process process : processes)
+                process.waitFor();
+        }
+        long endToEnd = System.nanoTime() - start;
+        long distributed = solving + picking + searching;
+
+        ///////////////////////// all in one process /////////////////////////
+
+        double[] x = new double[workers * size];
+        double[] y = new double[workers * size];
+        for (int shard = 0; shard < workers; shard++)
+            generate(shard, size, x, y, shard * size);
+
+        int[] pair = null;
+        long local = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long solveStart = System.nanoTime();
+            pair = ClosestPairFinder.find(x, y);
+            local = Math.min(local, System.nanoTime() - solveStart);
+        }
+        double single = Math.hypot(x[pair[0]] - x[pair[1]], y[pair[0]] - y[pair[1]]);
+
+        System.out.printf("closest pair:       (%f, %f) -> (%f, %f)%n", best[1], best[2], best[3], best[4]);
+        System.out.printf("distance:           %f (single process: %f)%n", best[0], single);
+        System.out.printf("bytes exchanged:    %d (raw points: %d)%n", bytes, 16L * workers * size);
+        System.out.printf("distributed:        %.1f ms (slowest worker %.1f ms, strips %.1f ms, search %.1f ms)%n",
+                distributed / 1e6, solving / 1e6, picking / 1e6, searching / 1e6);
+        System.out.printf("single process:     %.1f ms%n", local / 1e6);
+        System.out.printf("speedup:            %.2fx%n", (double) local / distributed);
+        System.out.printf("end to end:         %.1f ms, with starting %d worker JVMs%n", endToEnd / 1e6, workers);
+    }
+
+    // describes the workers that did not connect, and stops them all
+    private static String notConnected(Socket[] sockets, List<Process> processes) {
+        StringBuilder sb = new StringBuilder("no worker connected within " + CONNECT_TIMEOUT / 1000 + " s; missing:");
+        for (int shard = 0; shard < sockets.length; shard++) {
+            if (sockets[shard] == null) {
+                Process process = processes.get(shard);
+                sb.append(" worker ").append(shard);
+                sb.append(process.isAlive() ? " (still running)" : " (exited with " + process.exitValue() + ")");
+            }
+        }
+        for (Process process : processes)
+            process.destroyForcibly();
+        return sb.toString();
+    }
+
+    // solves a shard and answers the coordinator on the given port, with
+    // the best time each step took before its answer
+    private static void work(int port, int shard, int size) throws IOException {
+        double[] x = new double[size];
+        double[] y = new double[size];
+        generate(shard, size, x, y, 0);
+
+        int[] pair = null;
+        long solving = 0;
+        if (size > 1) {
+            solving = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                pair = ClosestPairFinder.find(x, y);
+                solving = Math.min(solving, System.nanoTime() - start);
+            }
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(shard);
+
+            // the local closest pair, or an infinite distance if there is none
+            out.writeLong(solving);
+            if (pair != null) {
+                out.writeDouble(Math.hypot(x[pair[0]] - x[pair[1]], y[pair[0]] - y[pair[1]]));
+                out.writeDouble(x[pair[0]]);
+                out.writeDouble(y[pair[0]]);
+                out.writeDouble(x[pair[1]]);
+                out.writeDouble(y[pair[1]]);
+            } else {
+                for (int k = 0; k < 5; k++)
+                    out.writeDouble(Double.POSITIVE_INFINITY);
+            }
+            out.flush();
+
+            // send the points within d of either edge of the range
+            double d = in.readDouble();
+            double lo = shard * WIDTH, hi = lo + WIDTH;
+            double[] strip = null;
+            long picking = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                int count = 0;
+                for (int i = 0; i < size; i++)
+                    if (x[i] - lo < d || hi - x[i] < d)
+                        count++;
+                strip = new double[2 * count];
+                int k = 0;
+                for (int i = 0; i < size; i++) {
+                    if (x[i] - lo < d || hi - x[i] < d) {
+                        strip[k++] = x[i];
+                        strip[k++] = y[i];
+                    }
+                }
+                picking = Math.min(picking, System.nanoTime() - start);
+            }
+
+            out.writeLong(picking);
+            out.writeInt(strip.length / 2);
+            for (double value : strip)
+                out.writeDouble(value);
+            out.flush();
+
+            // wait for the coordinator to finish
+            in.read();
+        }
+    }
+
+    // fills x and y from offset with the points of a shard, spread
+    // evenly over its range of x
+    private static void generate(int shard, int size, double[] x, double[] y, int offset) {
+        Random random = new Random(shard);
+        for (int i = offset; i < offset + size; i++) {
+            x[i] = (shard + random.nextDouble()) * WIDTH;
+            y[i] = random.nextDouble() * HEIGHT;
+        }
+    }
+}
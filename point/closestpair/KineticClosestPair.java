@@ -0,0 +1,1149 @@
+package point.closestpair;
+
+import point.IndexSort;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * A kinetic data structure that follows the closest pair of points that
+ * move in straight lines inside a box and bounce off its walls. Instead
+ * of solving the closest pair again for every frame, it keeps a proof
+ * that the pair is the closest one, made of certificates: conditions on
+ * the points that hold for now, each with the first time it fails. The
+ * times are kept in an event queue, and advancing to a time only fixes
+ * the certificates that fail before it, so the cost of a frame depends on
+ * how many of them fail rather than on the number of points.
+ *
+ * The event queue is a binary heap indexed by certificate, so finding a
+ * certificate again moves its event instead of leaving a stale one.
+ *
+ * The closest pair is always an edge of the Delaunay triangulation, so
+ * the proof has two parts. The triangulation, of the points and the
+ * three corners of a large triangle around the box, has one certificate
+ * for every edge: that the fourth point of the two triangles on it is
+ * not inside the circle of the other three, which fails at a root of a
+ * polynomial of degree four in time, and is fixed by flipping the edge.
+ * The edges between points then play a tournament on their squared
+ * lengths, a polynomial of degree two, where every match is a
+ * certificate that the winner is not longer than the loser, and is fixed
+ * by playing it again along with the matches above it. A bounce is an
+ * event as well, after which the certificates of the point are found
+ * again.
+ *
+ * Points that are cocircular, or collinear, or that meet, make many
+ * certificates zero at once, and rounding could then give a certificate
+ * and the one of its flipped edge the same sign, so that the edge is
+ * flipped back and forth forever. The certificate of an edge is
+ * therefore always computed from its four points in order of index, so
+ * that the flipped edge, on the same four points, has exactly the
+ * opposite sign, and a certificate whose sign is not certain from its
+ * error bounds is computed again exactly, in integers. An edge is then
+ * flipped only when its certificate is negative just after now, and the
+ * flipped one is positive; a certificate that stays zero, as for points
+ * moving along a circle, never fails, since both of its triangulations
+ * are Delaunay. Every triangle has a certificate too, that it keeps its
+ * orientation: points that pass through each other turn a triangle over
+ * before any edge fails, and the triangulation is then built again.
+ * Events are scheduled when their certificates are surely negative, a
+ * little after the roots found in floating point, so that the exact
+ * computation is rarely needed.
+ *
+ * Times are in the units the velocities are given in, and start at 0.
+ */
+public final class KineticClosestPair {
+
+    // the relative error allowed in a coefficient of a certificate,
+    // below which it is taken to be zero
+    private static final double EPSILON = 1e-12;
+
+    // a point that hits two walls this close in time bounces off both
+    private static final double CORNER = 1e-9;
+
+    // the points, then the three corners of the frame: the position of
+    // point i at time t is (x[i] + vx[i] * (t - t0[i]), ...)
+    private final int n;
+    private final double[] x;
+    private final double[] y;
+    private final double[] t0;
+    private final double[] vx;
+    private final double[] vy;
+    private final double minX, minY, maxX, maxY;
+    private double now;
+
+    // the triangles, counter-clockwise: neighbor and edge k of a triangle
+    // are across from its vertex k
+    private final int[] vertex;
+    private final int[] neighbor;
+    private final int[] edgeOf;
+    private int numTriangles;
+
+    // the ends of every edge, one triangle side it is on (3 * triangle
+    // + k), and a triangle of every vertex
+    private final int[] from;
+    private final int[] to;
+    private final int[] side;
+    private final int[] triangleOf;
+    private int numEdges;
+
+    // the tournament, with the edges at the leaves from index leaves on
+    private final int leaves;
+    private final int[] winner;
+
+    // the event queue: the certificates of the edges come first, then
+    // those of the matches, the walls and the triangles, each with the
+    // time it fails at and its place in the heap, or -1 if it never fails
+    private final int matches;
+    private final int walls;
+    private final int turns;
+    private final double[] due;
+    private final int[] heap;
+    private final int[] place;
+    private int heapSize;
+    private long numOfEvents;
+    private long numOfRebuilds;
+
+    // the coefficients of the certificate being found, and the error
+    // bound of each of them
+    private final double[] poly = new double[6];
+    private final double[] error = new double[6];
+    private final double[] raised = new double[6];
+
+    // the vertices of the certificate being found, in order of index
+    private final int[] quad = new int[4];
+
+    /**
+     * Starts following the closest pair of the points with the given
+     * positions and velocities, at time 0. The points must be inside the
+     * box, which they never leave.
+     *
+     * @param x    the x-coordinates of the points
+     * @param y    the y-coordinates of the points
+     * @param vx   the velocities of the points on x
+     * @param vy   the velocities of the points on y
+     * @param minX the left wall of the box
+     * @param minY the top wall of the box
+     * @param maxX the right wall of the box
+     * @param maxY the bottom wall of the box
+     */
+    public KineticClosestPair(double[] x, double[] y, double[] vx, double[] vy,
+                              double minX, double minY, double maxX, double maxY) {
+        n = x.length;
+        if (y.length != n || vx.length != n || vy.length != n)
+            throw new IllegalArgumentException("x, y, vx and vy differ in length");
+        if (n < 2)
+            throw new IllegalArgumentException("size < 2");
+        if (!(minX < maxX && minY < maxY))
+            throw new IllegalArgumentException("empty box");
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        this.x = new double[n + 3];
+        this.y = new double[n + 3];
+        this.t0 = new double[n + 3];
+        this.vx = new double[n + 3];
+        this.vy = new double[n + 3];
+        for (int i = 0; i < n; i++) {
+            if (!(x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY))
+                throw new IllegalArgumentException("point " + i + " is outside the box");
+            this.x[i] = x[i];
+            this.y[i] = y[i];
+            this.vx[i] = vx[i];
+            this.vy[i] = vy[i];
+        }
+
+        // the corners of a triangle so far from the box that they are
+        // outside the circle on any two points in it; the closest pair,
+        // whose circle is empty, is then still a Delaunay edge
+        double cx = (minX + maxX) / 2, cy = (minY + maxY) / 2;
+        double r = 10 * (Math.hypot(maxX - minX, maxY - minY) + 1);
+        for (int k = 0; k < 3; k++) {
+            double angle = Math.PI / 2 + k * 2 * Math.PI / 3;
+            this.x[n + k] = cx + r * Math.cos(angle);
+            this.y[n + k] = cy + r * Math.sin(angle);
+        }
+
+        int triangles = 2 * n + 1, edges = 3 * n + 3;
+        vertex = new int[3 * triangles];
+        neighbor = new int[3 * triangles];
+        edgeOf = new int[3 * triangles];
+        from = new int[edges];
+        to = new int[edges];
+        side = new int[edges];
+        triangleOf = new int[n + 3];
+
+        int s = 1;
+        while (s < edges)
+            s <<= 1;
+        leaves = s;
+        winner = new int[2 * leaves];
+
+        matches = edges;
+        walls = matches + leaves;
+        turns = walls + n;
+        due = new double[turns + triangles];
+        heap = new int[turns + triangles];
+        place = new int[turns + triangles];
+
+        triangulate();
+        start();
+    }
+
+    /**
+     * Returns the number of points.
+     *
+     * @return number of points
+     */
+    public int numOfPoints() {
+        return n;
+    }
+
+    /**
+     * Returns the time the points have been advanced to.
+     *
+     * @return the current time
+     */
+    public double time() {
+        return now;
+    }
+
+    /**
+     * Returns the number of events handled so far, which is the work
+     * done by advance().
+     *
+     * @return number of events
+     */
+    public long numOfEvents() {
+        return numOfEvents;
+    }
+
+    /**
+     * Returns the number of times the triangulation was built again,
+     * which happens when points meet or become collinear at the same
+     * time as certificates fail.
+     *
+     * @return number of rebuilds
+     */
+    public long numOfRebuilds() {
+        return numOfRebuilds;
+    }
+
+    /**
+     * Getters for the position and the velocity of a point at the
+     * current time.
+     */
+    public double x(int i)              { return x[i] + vx[i] * (now - t0[i]); }
+    public double y(int i)              { return y[i] + vy[i] * (now - t0[i]); }
+    public double velocityX(int i)      { return vx[i]; }
+    public double velocityY(int i)      { return vy[i]; }
+
+    /**
+     * Changes the velocity of the point of the given index from the
+     * current time on.
+     *
+     * @param i  the index of the point
+     * @param vx the new velocity on x
+     * @param vy the new velocity on y
+     */
+    public void setVelocity(int i, double vx, double vy) {
+        if (i < 0 || i >= n)
+            throw new IndexOutOfBoundsException("point " + i);
+        anchor(i);
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        moved(i);
+    }
+
+    /**
+     * Moves the points on to the given time, handling every event before
+     * it in order.
+     *
+     * @param t the time, not before the current time
+     */
+    public void advance(double t) {
+        if (t < now)
+            throw new IllegalArgumentException("t < time()");
+
+        while (heapSize > 0 && due[heap[0]] <= t) {
+            int id = heap[0];
+            now = Math.max(now, due[id]);
+            schedule(id, Double.POSITIVE_INFINITY);
+
+            if (id < matches)
+                flipIfFailed(id);
+            else if (id < walls)
+                replay(id - matches, -1);
+            else if (id < turns)
+                bounce(id - walls);
+            else
+                rebuildIfTurned(id - turns);
+            numOfEvents++;
+        }
+        now = t;
+    }
+
+    /**
+     * Returns the closest pair at the current time.
+     *
+     * @return the indices of the two points, the smaller one first
+     */
+    public int[] closestPair() {
+        int e = winner[1];
+        return new int[] {Math.min(from[e], to[e]), Math.max(from[e], to[e])};
+    }
+
+    /**
+     * Returns the distance of the closest pair at the current time.
+     *
+     * @return the distance
+     */
+    public double distance() {
+        int e = winner[1];
+        return Math.hypot(x(from[e]) - x(to[e]), y(from[e]) - y(to[e]));
+    }
+
+    ///////////////////////////// Motion /////////////////////////////
+
+    // moves the reference position of the point to the current time
+    private void anchor(int i) {
+        x[i] = x(i);
+        y[i] = y(i);
+        t0[i] = now;
+    }
+
+    // turns the point back from the wall it hits first, which it is at
+    // by now, up to rounding
+    private void bounce(int i) {
+        anchor(i);
+        double tx = timeToWall(x[i], vx[i], minX, maxX), ty = timeToWall(y[i], vy[i], minY, maxY);
+        double first = Math.min(tx, ty);
+        if (tx <= first + CORNER) {
+            x[i] = (vx[i] > 0) ? maxX : minX;
+            vx[i] = -vx[i];
+        }
+        if (ty <= first + CORNER) {
+            y[i] = (vy[i] > 0) ? maxY : minY;
+            vy[i] = -vy[i];
+        }
+        moved(i);
+    }
+
+    // finds the certificates of a point that changed its velocity again:
+    // the edges and the triangles around it and the edges across from
+    // it, the matches of the edges around it, and the time it hits a wall
+    private void moved(int i) {
+        int first = triangleOf[i], t = first;
+        do {
+            int k = indexIn(t, i);
+            int around = edgeOf[3 * t + (k + 1) % 3];
+            scheduleFlip(around);
+            scheduleFlip(edgeOf[3 * t + k]);
+            scheduleTurn(t);
+            replay((leaves + around) >> 1, around);
+            t = neighbor[3 * t + (k + 1) % 3];
+        } while (t != first);
+        scheduleWall(i);
+    }
+
+    private void scheduleWall(int i) {
+        double time = Math.min(timeToWall(x(i), vx[i], minX, maxX), timeToWall(y(i), vy[i], minY, maxY));
+        schedule(walls + i, now + time);
+    }
+
+    // the time from now that a coordinate moving at velocity v takes to
+    // reach min or max
+    private static double timeToWall(double c, double v, double min, double max) {
+        if (v > 0)
+            return Math.max(0, (max - c) / v);
+        if (v < 0)
+            return Math.max(0, (min - c) / v);
+        return Double.POSITIVE_INFINITY;
+    }
+
+    ///////////////////////////// Triangulation /////////////////////////////
+
+    // the Delaunay triangulation of the points just after now, whose
+    // positions are anchored at now, inserted one by one in x-major order
+    // into the triangle of the frame. Points at the same position are
+    // told apart by their velocities.
+    private void triangulate() {
+        numTriangles = 0;
+        numEdges = 0;
+        setTriangle(0, n, n + 1, n + 2, -1, -1, -1, newEdge(n + 1, n + 2), newEdge(n + 2, n), newEdge(n, n + 1));
+        numTriangles = 1;
+
+        int[] order = IndexSort.sort(n, x, y);
+        int t = 0;
+        for (int i = 0; i < n; i++) {
+            int p = order[i], q = (i > 0) ? order[i - 1] : -1;
+            if (q >= 0 && x[p] == x[q] && y[p] == y[q] && vx[p] == vx[q] && vy[p] == vy[q])
+                throw new IllegalArgumentException("duplicate points");
+            t = locate(p, t);
+            t = insert(p, t);
+        }
+    }
+
+    // finds every certificate of the triangulation, after it is built
+    private void start() {
+        heapSize = 0;
+        Arrays.fill(place, -1);
+
+        for (int i = 0; i < 2 * leaves; i++)
+            winner[i] = (i >= leaves && i - leaves < numEdges) ? i - leaves : -1;
+        for (int node = leaves - 1; node >= 1; node--)
+            play(node);
+
+        for (int e = 0; e < numEdges; e++)
+            scheduleFlip(e);
+        for (int i = 0; i < n; i++)
+            scheduleWall(i);
+        for (int t = 0; t < numTriangles; t++)
+            scheduleTurn(t);
+    }
+
+    // A triangle turns over only if its points meet or become collinear
+    // at the same time as the certificates of its edges fail, as when
+    // points on a grid pass through each other, and no flip can mend the
+    // triangulation then: it is built again for the positions just after
+    // now, in O(n log n) time. Otherwise only schedules it again.
+    private void rebuildIfTurned(int t) {
+        orientation(vertex[3 * t], vertex[3 * t + 1], vertex[3 * t + 2]);
+        double time = failure(poly, 2, error);
+        if (time > now) {
+            schedule(turns + t, time);
+            return;
+        }
+
+        for (int i = 0; i < n; i++)
+            anchor(i);
+        triangulate();
+        start();
+        numOfRebuilds++;
+    }
+
+    // schedules the time that triangle t turns over
+    private void scheduleTurn(int t) {
+        orientation(vertex[3 * t], vertex[3 * t + 1], vertex[3 * t + 2]);
+        schedule(turns + t, failure(poly, 2, error));
+    }
+
+    // walks from triangle t to the triangle that point p is in
+    private int locate(int p, int t) {
+        walk:
+        while (true) {
+            for (int k = 0; k < 3; k++)
+                if (orient(vertex[3 * t + (k + 1) % 3], vertex[3 * t + (k + 2) % 3], p) < 0) {
+                    t = neighbor[3 * t + k];
+                    continue walk;
+                }
+            return t;
+        }
+    }
+
+    // splits the triangle t that point p is in, or the two triangles
+    // on the edge p is on, and makes the triangulation Delaunay again
+    private int insert(int p, int t) {
+        int[] stack = new int[16];
+        int size = 0;
+
+        for (int k = 0; k < 3; k++) {
+            if (orient(vertex[3 * t + (k + 1) % 3], vertex[3 * t + (k + 2) % 3], p) != 0)
+                continue;
+
+            // p is on the edge across from c, between t = (c, a, b) and
+            // u = (d, b, a)
+            int c = vertex[3 * t + k], a = vertex[3 * t + (k + 1) % 3], b = vertex[3 * t + (k + 2) % 3];
+            int e = edgeOf[3 * t + k], u = neighbor[3 * t + k];
+            int j = sideOf(u, t), d = vertex[3 * u + j];
+            int nCA = neighbor[3 * t + (k + 2) % 3], eCA = edgeOf[3 * t + (k + 2) % 3];
+            int nBC = neighbor[3 * t + (k + 1) % 3], eBC = edgeOf[3 * t + (k + 1) % 3];
+            int nAD = neighbor[3 * u + (j + 1) % 3], eAD = edgeOf[3 * u + (j + 1) % 3];
+            int nDB = neighbor[3 * u + (j + 2) % 3], eDB = edgeOf[3 * u + (j + 2) % 3];
+
+            int t2 = numTriangles++, u2 = numTriangles++;
+            int eCP = newEdge(c, p), ePB = newEdge(p, b), eDP = newEdge(d, p);
+            from[e] = a;
+            to[e] = p;
+            setTriangle(t, c, a, p, u2, t2, nCA, e, eCP, eCA);
+            setTriangle(t2, c, p, b, u, nBC, t, ePB, eBC, eCP);
+            setTriangle(u, d, b, p, t2, u2, nDB, ePB, eDP, eDB);
+            setTriangle(u2, d, p, a, t, nAD, u, e, eAD, eDP);
+            replaceNeighbor(nBC, t, t2);
+            replaceNeighbor(nAD, u, u2);
+
+            stack = push(stack, size++, eCA);
+            stack = push(stack, size++, eBC);
+            stack = push(stack, size++, eAD);
+            stack = push(stack, size++, eDB);
+            legalize(stack, size);
+            return t;
+        }
+
+        // p is inside t = (a, b, c)
+        int a = vertex[3 * t], b = vertex[3 * t + 1], c = vertex[3 * t + 2];
+        int nA = neighbor[3 * t], eA = edgeOf[3 * t];
+        int nB = neighbor[3 * t + 1], eB = edgeOf[3 * t + 1];
+        int nC = neighbor[3 * t + 2], eC = edgeOf[3 * t + 2];
+
+        int tB = numTriangles++, tC = numTriangles++;
+        int eAP = newEdge(a, p), eBP = newEdge(b, p), eCP = newEdge(c, p);
+        setTriangle(t, a, b, p, tB, tC, nC, eBP, eAP, eC);
+        setTriangle(tB, b, c, p, tC, t, nA, eCP, eBP, eA);
+        setTriangle(tC, c, a, p, t, tB, nB, eAP, eCP, eB);
+        replaceNeighbor(nA, t, tB);
+        replaceNeighbor(nB, t, tC);
+
+        stack = push(stack, size++, eA);
+        stack = push(stack, size++, eB);
+        stack = push(stack, size++, eC);
+        legalize(stack, size);
+        return t;
+    }
+
+    // flips the edges on the stack, and the edges around the ones that
+    // are flipped, until they are all locally Delaunay
+    private void legalize(int[] stack, int size) {
+        while (size > 0) {
+            int e = stack[--size];
+            if (!certificate(e) || failure(poly, 4, error) > now)
+                continue;
+
+            int[] around = flip(e);
+            for (int f : around)
+                stack = push(stack, size++, f);
+        }
+    }
+
+    private static int[] push(int[] stack, int size, int e) {
+        if (size == stack.length)
+            stack = Arrays.copyOf(stack, 2 * size);
+        stack[size] = e;
+        return stack;
+    }
+
+    // flips edge e, between t = (c, a, b) and u = (d, b, a), to the edge
+    // from c to d, and returns the four edges around it
+    private int[] flip(int e) {
+        int t = side[e] / 3, k = side[e] % 3;
+        int u = neighbor[3 * t + k], j = sideOf(u, t);
+        int c = vertex[3 * t + k], a = vertex[3 * t + (k + 1) % 3], b = vertex[3 * t + (k + 2) % 3];
+        int d = vertex[3 * u + j];
+        int nCA = neighbor[3 * t + (k + 2) % 3], eCA = edgeOf[3 * t + (k + 2) % 3];
+        int nBC = neighbor[3 * t + (k + 1) % 3], eBC = edgeOf[3 * t + (k + 1) % 3];
+        int nAD = neighbor[3 * u + (j + 1) % 3], eAD = edgeOf[3 * u + (j + 1) % 3];
+        int nDB = neighbor[3 * u + (j + 2) % 3], eDB = edgeOf[3 * u + (j + 2) % 3];
+
+        from[e] = c;
+        to[e] = d;
+        setTriangle(t, c, a, d, nAD, u, nCA, eAD, e, eCA);
+        setTriangle(u, d, b, c, nBC, t, nDB, eBC, e, eDB);
+        replaceNeighbor(nAD, u, t);
+        replaceNeighbor(nBC, t, u);
+        return new int[] {eCA, eBC, eAD, eDB};
+    }
+
+    // flips edge e if its certificate has failed by now, and finds the
+    // certificates it changes; otherwise only schedules it again. The
+    // certificate of the flipped edge is the negation of this one, so it
+    // holds just after now and the edge is not flipped back
+    private void flipIfFailed(int e) {
+        if (!certificate(e))
+            return;
+        double time = failure(poly, 4, error);
+        if (time > now) {
+            schedule(e, time);
+            return;
+        }
+
+        int[] around = flip(e);
+        scheduleFlip(e);
+        for (int f : around)
+            scheduleFlip(f);
+        scheduleTurn(side[e] / 3);
+        scheduleTurn(neighbor[side[e]]);
+        replay((leaves + e) >> 1, e);
+    }
+
+    private void scheduleFlip(int e) {
+        schedule(e, certificate(e) ? failure(poly, 4, error) : Double.POSITIVE_INFINITY);
+    }
+
+    // puts the certificate of edge e, between t = (c, a, b) and u, whose
+    // other vertex is d, in poly as a polynomial in the time from now:
+    // minus the determinant that is positive when d is inside the circle
+    // on c, a and b, and the error bounds of its coefficients in error.
+    // The determinant changes sign with every swap of two of the points,
+    // so it is found for the points in order of index, and its sign set
+    // by the number of swaps that sort them. Returns false if the edge is
+    // on the frame and has no certificate.
+    private boolean certificate(int e) {
+        int t = side[e] / 3, k = side[e] % 3;
+        int u = neighbor[3 * t + k];
+        if (u < 0)
+            return false;
+        quad[0] = vertex[3 * t + k];
+        quad[1] = vertex[3 * t + (k + 1) % 3];
+        quad[2] = vertex[3 * t + (k + 2) % 3];
+        quad[3] = vertex[3 * u + sideOf(u, t)];
+
+        boolean odd = false;
+        for (int i = 1; i < 4; i++) {
+            for (int j = i; j > 0 && quad[j - 1] > quad[j]; j--) {
+                int swap = quad[j];
+                quad[j] = quad[j - 1];
+                quad[j - 1] = swap;
+                odd = !odd;
+            }
+        }
+        int c = quad[0], a = quad[1], b = quad[2], d = quad[3];
+
+        double dx = x(d), dy = y(d);
+        double cx0 = x(c) - dx, cy0 = y(c) - dy, cx1 = vx[c] - vx[d], cy1 = vy[c] - vy[d];
+        double ax0 = x(a) - dx, ay0 = y(a) - dy, ax1 = vx[a] - vx[d], ay1 = vy[a] - vy[d];
+        double bx0 = x(b) - dx, by0 = y(b) - dy, bx1 = vx[b] - vx[d], by1 = vy[b] - vy[d];
+
+        for (int i = 0; i < 5; i++) {
+            poly[i] = 0;
+            error[i] = 0;
+        }
+        term(cx0, cy0, cx1, cy1, ax0, ay0, ax1, ay1, bx0, by0, bx1, by1);
+        term(ax0, ay0, ax1, ay1, bx0, by0, bx1, by1, cx0, cy0, cx1, cy1);
+        term(bx0, by0, bx1, by1, cx0, cy0, cx1, cy1, ax0, ay0, ax1, ay1);
+        for (int i = 0; i < 5; i++) {
+            if (odd)
+                poly[i] = -poly[i];
+            error[i] *= EPSILON;
+        }
+
+        int limit = uncertain(4);
+        if (limit >= 0) {
+            int scale = scale(scale(scale(scale(0, c), a), b), d);
+            BigInteger[][][] rows = {linear(c, d, scale), linear(a, d, scale), linear(b, d, scale)};
+            BigInteger[] det = {BigInteger.ZERO};
+            for (int i = 0; i < 3; i++) {
+                BigInteger[][] p = rows[i], q = rows[(i + 1) % 3], r = rows[(i + 2) % 3];
+                BigInteger[] w = plus(times(p[0], p[0], limit), times(p[1], p[1], limit));
+                BigInteger[] cross = minus(times(q[0], r[1], limit), times(q[1], r[0], limit));
+                det = plus(det, times(w, cross, limit));
+            }
+            exact(det, 4 * scale, !odd);
+        }
+        return true;
+    }
+
+    // subtracts from poly the term of the determinant for the row of p:
+    // the squared length of p times the cross product of q and r, and
+    // adds the sizes of its coefficients to error
+    private void term(double px0, double py0, double px1, double py1,
+                      double qx0, double qy0, double qx1, double qy1,
+                      double rx0, double ry0, double rx1, double ry1) {
+        double w0 = px0 * px0 + py0 * py0;
+        double w1 = 2 * (px0 * px1 + py0 * py1);
+        double w2 = px1 * px1 + py1 * py1;
+        double c0 = qx0 * ry0 - qy0 * rx0;
+        double c1 = qx0 * ry1 + qx1 * ry0 - qy0 * rx1 - qy1 * rx0;
+        double c2 = qx1 * ry1 - qy1 * rx1;
+
+        poly[0] -= w0 * c0;
+        poly[1] -= w0 * c1 + w1 * c0;
+        poly[2] -= w0 * c2 + w1 * c1 + w2 * c0;
+        poly[3] -= w1 * c2 + w2 * c1;
+        poly[4] -= w2 * c2;
+
+        double a1 = 2 * (Math.abs(px0 * px1) + Math.abs(py0 * py1));
+        double b0 = Math.abs(qx0 * ry0) + Math.abs(qy0 * rx0);
+        double b1 = Math.abs(qx0 * ry1) + Math.abs(qx1 * ry0) + Math.abs(qy0 * rx1) + Math.abs(qy1 * rx0);
+        double b2 = Math.abs(qx1 * ry1) + Math.abs(qy1 * rx1);
+        error[0] += w0 * b0;
+        error[1] += w0 * b1 + a1 * b0;
+        error[2] += w0 * b2 + a1 * b1 + w2 * b0;
+        error[3] += a1 * b2 + w2 * b1;
+        error[4] += w2 * b2;
+    }
+
+    private int newEdge(int a, int b) {
+        from[numEdges] = a;
+        to[numEdges] = b;
+        return numEdges++;
+    }
+
+    private void setTriangle(int t, int a, int b, int c, int nA, int nB, int nC, int eA, int eB, int eC) {
+        vertex[3 * t] = a;
+        vertex[3 * t + 1] = b;
+        vertex[3 * t + 2] = c;
+        neighbor[3 * t] = nA;
+        neighbor[3 * t + 1] = nB;
+        neighbor[3 * t + 2] = nC;
+        edgeOf[3 * t] = eA;
+        edgeOf[3 * t + 1] = eB;
+        edgeOf[3 * t + 2] = eC;
+        side[eA] = 3 * t;
+        side[eB] = 3 * t + 1;
+        side[eC] = 3 * t + 2;
+        triangleOf[a] = triangleOf[b] = triangleOf[c] = t;
+    }
+
+    private void replaceNeighbor(int t, int old, int replacement) {
+        if (t >= 0)
+            neighbor[3 * t + sideOf(t, old)] = replacement;
+    }
+
+    // the side of triangle t that is across from triangle u
+    private int sideOf(int t, int u) {
+        return (neighbor[3 * t] == u) ? 0 : (neighbor[3 * t + 1] == u) ? 1 : 2;
+    }
+
+    private int indexIn(int t, int i) {
+        return (vertex[3 * t] == i) ? 0 : (vertex[3 * t + 1] == i) ? 1 : 2;
+    }
+
+    // the orientation of a, b and c just after now: positive if they
+    // turn counter-clockwise, or zero if they stay on a line
+    private int orient(int a, int b, int c) {
+        orientation(a, b, c);
+        return sign(poly, 2, error);
+    }
+
+    // puts the orientation of a, b and c in poly as a polynomial in the
+    // time from now, and the error bounds of its coefficients in error.
+    // As with certificate(), it is found for the points in order of index
+    // so that any order of the same points gives the same value up to sign
+    private void orientation(int a, int b, int c) {
+        boolean odd = false;
+        if (a > b) {
+            int swap = a;
+            a = b;
+            b = swap;
+            odd = !odd;
+        }
+        if (b > c) {
+            int swap = b;
+            b = c;
+            c = swap;
+            odd = !odd;
+        }
+        if (a > b) {
+            int swap = a;
+            a = b;
+            b = swap;
+            odd = !odd;
+        }
+
+        double ax = x(a), ay = y(a);
+        double bx0 = x(b) - ax, by0 = y(b) - ay, bx1 = vx[b] - vx[a], by1 = vy[b] - vy[a];
+        double cx0 = x(c) - ax, cy0 = y(c) - ay, cx1 = vx[c] - vx[a], cy1 = vy[c] - vy[a];
+        poly[0] = bx0 * cy0 - by0 * cx0;
+        poly[1] = bx0 * cy1 + bx1 * cy0 - by0 * cx1 - by1 * cx0;
+        poly[2] = bx1 * cy1 - by1 * cx1;
+        error[0] = EPSILON * (Math.abs(bx0 * cy0) + Math.abs(by0 * cx0));
+        error[1] = EPSILON * (Math.abs(bx0 * cy1) + Math.abs(bx1 * cy0) + Math.abs(by0 * cx1) + Math.abs(by1 * cx0));
+        error[2] = EPSILON * (Math.abs(bx1 * cy1) + Math.abs(by1 * cx1));
+        if (odd)
+            for (int i = 0; i < 3; i++)
+                poly[i] = -poly[i];
+
+        int limit = uncertain(2);
+        if (limit >= 0) {
+            int scale = scale(scale(scale(0, a), b), c);
+            BigInteger[][] q = linear(b, a, scale), r = linear(c, a, scale);
+            exact(minus(times(q[0], r[1], limit), times(q[1], r[0], limit)), 2 * scale, odd);
+        }
+    }
+
+    ///////////////////////////// Tournament /////////////////////////////
+
+    // plays the matches from the node up again, after the key of edge e
+    // changed, or none if e is -1; the matches above a node whose winner
+    // stays the same are only played again if the winner is e
+    private void replay(int node, int e) {
+        for (; node >= 1; node >>= 1) {
+            int old = winner[node];
+            play(node);
+            if (winner[node] == old && old != e)
+                return;
+        }
+    }
+
+    // plays the match of a node of the tournament again, at the current
+    // time, and schedules the time the loser overtakes the winner
+    private void play(int node) {
+        int left = winner[2 * node], right = winner[2 * node + 1];
+        if (right < 0 || isFramed(right) || left < 0 || isFramed(left)) {
+            winner[node] = (right < 0 || isFramed(right)) ? left : right;
+            schedule(matches + node, Double.POSITIVE_INFINITY);
+            return;
+        }
+
+        difference(right, left);
+        double time = failure(poly, 2, error);
+        if (time <= now) {
+            int t = left;
+            left = right;
+            right = t;
+            difference(right, left);
+            time = failure(poly, 2, error);
+        }
+        winner[node] = left;
+        schedule(matches + node, time);
+    }
+
+    // an edge to a corner of the frame, which never is the closest pair
+    private boolean isFramed(int e) {
+        return from[e] >= n || to[e] >= n;
+    }
+
+    // puts the squared length of edge e minus that of edge f in poly, and
+    // the error bounds of its coefficients in error. Each length is found
+    // on its own, so that swapping e and f only changes the sign
+    private void difference(int e, int f) {
+        length(e, 0);
+        length(f, 3);
+        for (int i = 0; i < 3; i++) {
+            error[i] = EPSILON * (error[i] + error[i + 3]);
+            poly[i] -= poly[i + 3];
+        }
+    }
+
+    // puts the squared length of edge e, as a polynomial in the time
+    // from now, in poly from index at on, and the sizes of its
+    // coefficients in error
+    private void length(int e, int at) {
+        double x0 = x(from[e]) - x(to[e]), y0 = y(from[e]) - y(to[e]);
+        double x1 = vx[from[e]] - vx[to[e]], y1 = vy[from[e]] - vy[to[e]];
+        poly[at] = x0 * x0 + y0 * y0;
+        poly[at + 1] = 2 * (x0 * x1 + y0 * y1);
+        poly[at + 2] = x1 * x1 + y1 * y1;
+        error[at] = poly[at];
+        error[at + 1] = 2 * (Math.abs(x0 * x1) + Math.abs(y0 * y1));
+        error[at + 2] = poly[at + 2];
+    }
+
+    ///////////////////////////// Exact arithmetic /////////////////////////////
+
+    // Rounding can only change the sign of a coefficient that is within
+    // its error bound. If the sign of a polynomial just after now rests
+    // on such a coefficient, the polynomial is found again in exact
+    // arithmetic from the same positions and velocities, so that the
+    // certificates on the same points never disagree, however many of
+    // them are zero at once. The doubles are made integers by a power of
+    // two, so the exact values are BigIntegers of a few hundred bits.
+    // Only the coefficients up to the first one whose sign is certain are
+    // found, which at an event is often the value now alone. This happens
+    // at the events, when a certificate is close to zero, and for points
+    // that are cocircular, collinear or at one position.
+
+    // the last coefficient that has to be found exactly for the sign of
+    // poly just after now to be certain, or -1 if it is certain
+    private int uncertain(int degree) {
+        int limit = -1;
+        for (int i = 0; i <= degree; i++) {
+            if (Math.abs(poly[i]) > error[i])
+                return limit;
+            if (error[i] > 0)
+                limit = i;
+        }
+        return limit;
+    }
+
+    // puts the exact coefficients, which are 2^shift times too large, in
+    // poly as the nearest doubles, negated if asked to
+    private void exact(BigInteger[] f, int shift, boolean negate) {
+        for (int i = 0; i < f.length; i++) {
+            double value = Math.scalb(f[i].doubleValue(), -shift);
+            poly[i] = negate ? -value : value;
+            error[i] = 0;
+        }
+    }
+
+    // the power of two that makes the position and the velocity of
+    // point i integers, if it is larger than the given one
+    private int scale(int scale, int i) {
+        for (double value : new double[] {x(i), y(i), vx[i], vy[i]})
+            if (value != 0)
+                scale = Math.max(scale, 52 - Math.getExponent(value));
+        return scale;
+    }
+
+    // the position of point i relative to point j, on x and on y, each
+    // as a polynomial in the time from now, 2^scale times too large
+    private BigInteger[][] linear(int i, int j, int scale) {
+        return new BigInteger[][] {
+                {exact(x(i), scale).subtract(exact(x(j), scale)), exact(vx[i], scale).subtract(exact(vx[j], scale))},
+                {exact(y(i), scale).subtract(exact(y(j), scale)), exact(vy[i], scale).subtract(exact(vy[j], scale))}
+        };
+    }
+
+    // the double times 2^scale, which is an integer
+    private static BigInteger exact(double value, int scale) {
+        if (value == 0)
+            return BigInteger.ZERO;
+        long bits = Double.doubleToRawLongBits(value);
+        int exponent = (int) ((bits >> 52) & 0x7FF);
+        long mantissa = (exponent == 0) ? (bits & 0xFFFFFFFFFFFFFL) << 1 : (bits & 0xFFFFFFFFFFFFFL) | (1L << 52);
+        BigInteger m = BigInteger.valueOf((bits < 0) ? -mantissa : mantissa);
+        return m.shiftLeft(exponent - 1075 + scale);
+    }
+
+    // the product of two polynomials up to the given degree
+    private static BigInteger[] times(BigInteger[] f, BigInteger[] g, int degree) {
+        BigInteger[] h = new BigInteger[Math.min(f.length + g.length - 1, degree + 1)];
+        Arrays.fill(h, BigInteger.ZERO);
+        for (int i = 0; i < f.length && i < h.length; i++)
+            for (int j = 0; j < g.length && i + j < h.length; j++)
+                h[i + j] = h[i + j].add(f[i].multiply(g[j]));
+        return h;
+    }
+
+    private static BigInteger[] plus(BigInteger[] f, BigInteger[] g) {
+        BigInteger[] h = new BigInteger[Math.max(f.length, g.length)];
+        for (int i = 0; i < h.length; i++)
+            h[i] = ((i < f.length) ? f[i] : BigInteger.ZERO).add((i < g.length) ? g[i] : BigInteger.ZERO);
+        return h;
+    }
+
+    private static BigInteger[] minus(BigInteger[] f, BigInteger[] g) {
+        BigInteger[] negated = new BigInteger[g.length];
+        for (int i = 0; i < g.length; i++)
+            negated[i] = g[i].negate();
+        return plus(f, negated);
+    }
+
+    ///////////////////////////// Event queue /////////////////////////////
+
+    // sets the time that certificate id fails at, which takes it out of
+    // the queue if it is infinite
+    private void schedule(int id, double time) {
+        int i = place[id];
+        if (time == Double.POSITIVE_INFINITY) {
+            if (i < 0)
+                return;
+            place[id] = -1;
+            int last = heap[--heapSize];
+            if (i < heapSize) {
+                heap[i] = last;
+                place[last] = i;
+                siftUp(i);
+                siftDown(place[last]);
+            }
+            return;
+        }
+
+        due[id] = time;
+        if (i < 0) {
+            i = heapSize++;
+            heap[i] = id;
+            place[id] = i;
+        }
+        siftUp(i);
+        siftDown(place[id]);
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (due[heap[parent]] <= due[id])
+                break;
+            heap[i] = heap[parent];
+            place[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        place[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && due[heap[child + 1]] < due[heap[child]])
+                child++;
+            if (due[heap[child]] >= due[id])
+                break;
+            heap[i] = heap[child];
+            place[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = id;
+        place[id] = i;
+    }
+
+    ///////////////////////////// Roots /////////////////////////////
+
+    // the first time from now on that the polynomial in the time from now
+    // with the given coefficients is surely negative, or infinity if it
+    // never is; a coefficient within its error bound is taken to be zero,
+    // and if the value now is zero the sign just after now decides. Past
+    // now, the time is the first root of the polynomial raised by twice
+    // the bound on its error, so that an event is never early: the
+    // certificate found again at it is negative, and not a rounding of
+    // zero that would have to be scheduled once more
+    private double failure(double[] f, int degree, double[] bound) {
+        int sign = sign(f, degree, bound);
+        if (sign < 0)
+            return now;
+        if (sign == 0)
+            return Double.POSITIVE_INFINITY;
+        for (int i = 0; i <= degree; i++)
+            raised[i] = f[i] + 2 * bound[i];
+        while (degree > 0 && raised[degree] == 0)
+            degree--;
+        if (degree == 0)
+            return Double.POSITIVE_INFINITY;
+
+        double s = (degree <= 2) ? quadraticFailure(raised, degree) : firstNegative(raised, degree);
+        if (s == Double.POSITIVE_INFINITY)
+            return s;
+        double time = now + s;
+        return (time > now) ? time : Math.nextUp(now);
+    }
+
+    // the sign of the polynomial just after now, or zero if it is zero
+    // for all time; the coefficients within their bounds are set to zero
+    private static int sign(double[] f, int degree, double[] bound) {
+        for (int i = 0; i <= degree; i++)
+            if (Math.abs(f[i]) <= bound[i])
+                f[i] = 0;
+        for (int i = 0; i <= degree; i++)
+            if (f[i] != 0)
+                return (f[i] > 0) ? 1 : -1;
+        return 0;
+    }
+
+    // the same as failure(), in the time from now, for a polynomial of
+    // degree one or two that is positive just after now, from its roots
+    private static double quadraticFailure(double[] f, int degree) {
+        double c0 = f[0], c1 = f[1], c2 = (degree == 2) ? f[2] : 0;
+        if (c2 == 0)
+            return (c1 < 0) ? -c0 / c1 : Double.POSITIVE_INFINITY;
+
+        // a parabola opening up that only touches zero is never negative
+        double discriminant = c1 * c1 - 4 * c2 * c0;
+        if (discriminant <= 0)
+            return Double.POSITIVE_INFINITY;
+        double q = -(c1 + Math.copySign(Math.sqrt(discriminant), c1)) / 2;
+        double r1 = q / c2, r2 = c0 / q;
+
+        // opening up, it is negative between the roots; opening down,
+        // after the larger one, which is not before now
+        if (c2 > 0)
+            return (Math.min(r1, r2) > 0) ? Math.min(r1, r2) : Double.POSITIVE_INFINITY;
+        return Math.max(r1, r2);
+    }
+
+    // the same as quadraticFailure(), for any degree: between the roots of
+    // its derivative the polynomial only goes one way, so it becomes
+    // negative between the first two of them, or the bound on its roots,
+    // where it is negative at the second
+    private static double firstNegative(double[] f, int degree) {
+        double limit = rootBound(f, degree);
+        double[] critical = new double[degree + 1];
+        int m = roots(derivative(f, degree), degree - 1, 0, limit, critical);
+        critical[m++] = limit;
+
+        double lo = 0;
+        for (int i = 0; i < m; i++) {
+            double hi = critical[i];
+            if (evaluate(f, degree, hi) < 0)
+                return bisect(f, degree, lo, hi);
+            lo = hi;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // the roots of the polynomial in (lo, hi), in order, put in out
+    private static int roots(double[] f, int degree, double lo, double hi, double[] out) {
+        while (degree > 0 && f[degree] == 0)
+            degree--;
+        if (degree == 0)
+            return 0;
+        if (degree == 1) {
+            double root = -f[0] / f[1];
+            if (root > lo && root < hi) {
+                out[0] = root;
+                return 1;
+            }
+            return 0;
+        }
+
+        double[] critical = new double[degree + 1];
+        int m = roots(derivative(f, degree), degree - 1, lo, hi, critical);
+        critical[m++] = hi;
+
+        int count = 0;
+        double a = lo, fa = evaluate(f, degree, lo);
+        for (int i = 0; i < m; i++) {
+            double b = critical[i], fb = evaluate(f, degree, b);
+            if ((fa < 0 && fb > 0) || (fa > 0 && fb < 0)) {
+                out[count++] = (fa > 0) ? bisect(f, degree, a, b) : bisect(negate(f, degree), degree, a, b);
+            } else if (fb == 0 && b < hi) {
+                out[count++] = b;
+            }
+            a = b;
+            fa = fb;
+        }
+        return count;
+    }
+
+    // the root between lo, where the polynomial is not negative, and hi,
+    // where it is, by Newton's method kept inside the bracket: a step that
+    // would leave it halves the bracket instead
+    private static double bisect(double[] f, int degree, double lo, double hi) {
+        double s = lo + (hi - lo) / 2;
+        for (int i = 0; i < 100; i++) {
+            double value = f[degree], slope = 0;
+            for (int k = degree - 1; k >= 0; k--) {
+                slope = slope * s + value;
+                value = value * s + f[k];
+            }
+            if (value == 0)
+                return s;
+            if (value < 0)
+                hi = s;
+            else
+                lo = s;
+
+            double next = s - value / slope;
+            if (!(next > lo && next < hi)) {
+                next = lo + (hi - lo) / 2;
+                if (next <= lo || next >= hi)
+                    return hi;
+            } else if (Math.abs(next - s) <= 1e-15 * s) {
+                return next;
+            }
+            s = next;
+        }
+        return hi;
+    }
+
+    // Cauchy's bound: every root is smaller than this in magnitude
+    private static double rootBound(double[] f, int degree) {
+        double max = 0;
+        for (int i = 0; i < degree; i++)
+            max = Math.max(max, Math.abs(f[i] / f[degree]));
+        return 1 + max;
+    }
+
+    private static double[] derivative(double[] f, int degree) {
+        double[] d = new double[Math.max(degree, 1)];
+        for (int i = 1; i <= degree; i++)
+            d[i - 1] = i * f[i];
+        return d;
+    }
+
+    private static double[] negate(double[] f, int degree) {
+        double[] g = new double[degree + 1];
+        for (int i = 0; i <= degree; i++)
+            g[i] = -f[i];
+        return g;
+    }
+
+    private static double evaluate(double[] f, int degree, double s) {
+        double value = f[degree];
+        for (int i = degree - 1; i >= 0; i--)
+            value = value * s + f[i];
+        return value;
+    }
+}
@@ -0,0 +1,209 @@
+package point.closestpair;
+
+import point.IndexSort;
+import point.PointStore;
+
+/**
+ * A class that finds the closest pair of points of any dimension with a
+ * divide-and-conquer algorithm that generalizes the one in
+ * ClosestPairPane. Every range of points is split at the median of its
+ * widest coordinate, both halves are solved, and then only the points
+ * closer to the cut than the best distance, the slab, are looked at.
+ *
+ * The slab is itself a closest pair problem in one dimension less: it
+ * is only as thick as twice the best distance across the cut, so it is
+ * solved the same way without ever being split on that coordinate
+ * again, and the slabs inside it lose another coordinate each. Once a
+ * single coordinate is left, the points are sorted on it and each one
+ * is compared with the points within the best distance after it. As
+ * the points on each side of a cut are at least the best distance
+ * apart, only a few of them fit in that distance, and the whole
+ * search takes O(n log^(d-1) n) time for n points in d dimensions,
+ * whatever the distribution of the points, rather than the O(n^2) of
+ * scanning a slab in d - 1 dimensions on one coordinate.
+ *
+ * The 2-D case is left to ClosestPairFinder, and the distance of two
+ * points is written out for 3-D, so that the most common dimensions do
+ * not pay for the loop over coordinates.
+ */
+public final class MultiDimensionalClosestPair {
+
+    // ranges at most this large are solved by comparing every pair
+    private static final int BRUTE_FORCE = 16;
+
+    private final double[] c;
+    private final int d;
+
+    // the coordinates that the slab being solved may not be split on
+    private final boolean[] cut;
+
+    // the closest pair found so far and its squared distance
+    private double best = Double.POSITIVE_INFINITY;
+    private int first = -1;
+    private int second = -1;
+
+    private MultiDimensionalClosestPair(PointStore points) {
+        this.c = points.coordinates();
+        this.d = points.dimension();
+        this.cut = new boolean[d];
+    }
+
+    /**
+     * Finds the closest pair of the given points.
+     *
+     * @param points the points
+     * @return the indices of the two points
+     */
+    public static int[] find(PointStore points) {
+        if (points.size() < 2)
+            throw new IllegalArgumentException("size < 2");
+
+        if (points.dimension() == 2)
+            return ClosestPairFinder.find(points.column(0), points.column(1));
+
+        int n = points.size();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+
+        MultiDimensionalClosestPair finder = new MultiDimensionalClosestPair(points);
+        finder.solve(order, 0, n, points.dimension());
+        return new int[] {finder.first, finder.second};
+    }
+
+    // finds the closest pair in order[lo, hi), which may be split on
+    // the free coordinates that are not cut
+    private void solve(int[] order, int lo, int hi, int free) {
+        if (hi - lo <= BRUTE_FORCE) {
+            for (int i = lo; i < hi; i++)
+                for (int j = i + 1; j < hi; j++)
+                    check(order[i], order[j]);
+            return;
+        }
+        if (free == 1) {
+            sweep(order, lo, hi);
+            return;
+        }
+
+        int k = widest(order, lo, hi);
+        int mid = (lo + hi) >>> 1;
+        select(order, lo, hi, mid, k);
+        double at = c[order[mid] * d + k];
+
+        solve(order, lo, mid, free);
+        solve(order, mid, hi, free);
+        if (best == 0)
+            return;
+
+        // the points closer to the cut than the best distance
+        double delta = Math.sqrt(best);
+        int[] slab = new int[hi - lo];
+        int m = 0;
+        for (int i = lo; i < hi; i++)
+            if (Math.abs(c[order[i] * d + k] - at) < delta)
+                slab[m++] = order[i];
+        if (m < 2)
+            return;
+
+        cut[k] = true;
+        solve(slab, 0, m, free - 1);
+        cut[k] = false;
+    }
+
+    // finds the closest pair in order[lo, hi) in order of the one free coordinate
+    private void sweep(int[] order, int lo, int hi) {
+        int j = 0;
+        while (cut[j])
+            j++;
+
+        int m = hi - lo;
+        double[] key = new double[m];
+        for (int s = 0; s < m; s++)
+            key[s] = c[order[lo + s] * d + j];
+        int[] sorted = IndexSort.sort(m, key, key);
+
+        double delta = Math.sqrt(best);
+        for (int s = 0; s < m; s++) {
+            int a = sorted[s];
+            for (int t = s + 1; t < m && key[sorted[t]] - key[a] < delta; t++)
+                if (check(order[lo + a], order[lo + sorted[t]]))
+                    delta = Math.sqrt(best);
+        }
+    }
+
+    // compares the pair of points, and returns true if it is the closest so far
+    private boolean check(int a, int b) {
+        double dist = distanceSquared(a, b);
+        if (dist < best) {
+            best = dist;
+            first = Math.min(a, b);
+            second = Math.max(a, b);
+            return true;
+        }
+        return false;
+    }
+
+    private double distanceSquared(int a, int b) {
+        int p = a * d, q = b * d;
+        if (d == 3) {
+            double dx = c[p] - c[q], dy = c[p + 1] - c[q + 1], dz = c[p + 2] - c[q + 2];
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        double sum = 0;
+        for (int k = 0; k < d; k++) {
+            double diff = c[p + k] - c[q + k];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    // the free coordinate in which order[lo, hi) is spread the widest
+    private int widest(int[] order, int lo, int hi) {
+        int widest = -1;
+        double spread = -1;
+        for (int k = 0; k < d; k++) {
+            if (cut[k])
+                continue;
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                double v = c[order[i] * d + k];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > spread) {
+                spread = max - min;
+                widest = k;
+            }
+        }
+        return widest;
+    }
+
+    // puts the nth point of order[lo, hi) on coordinate k in its place,
+    // with no larger coordinates before it and no smaller ones after it
+    private void select(int[] order, int lo, int hi, int nth, int k) {
+        hi--;
+        while (lo < hi) {
+            double pivot = c[order[(lo + hi) >>> 1] * d + k];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (c[order[i] * d + k] < pivot)
+                    i++;
+                while (c[order[j] * d + k] > pivot)
+                    j--;
+                if (i <= j) {
+                    int t = order[i];
+                    order[i++] = order[j];
+                    order[j--] = t;
+                }
+            }
+
+            if (nth <= j)
+                hi = j;
+            else if (nth >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+}
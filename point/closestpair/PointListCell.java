@@ -0,0 +1,50 @@
+package point.closestpair;
+
+import javafx.beans.InvalidationListener;
+import javafx.scene.control.ListCell;
+import point.Point;
+import point.PointFormat;
+
+/**
+ * A cell of a list of points that follows the coordinates of its point.
+ * Only the cells on screen have a point, so when a point is dragged only
+ * its own row is written again, instead of every row being rebuilt by
+ * ListView.refresh(). The text is written into a builder that the cell
+ * keeps, with PointFormat rather than String.format.
+ */
+final class PointListCell extends ListCell<Point> {
+
+    private final StringBuilder text = new StringBuilder(24);
+    private final InvalidationListener moved = o -> show(getItem());
+
+    // the point whose coordinates this cell listens to
+    private Point point;
+
+    @Override
+    protected void updateItem(Point item, boolean empty) {
+        super.updateItem(item, empty);
+
+        Point p = empty ? null : item;
+        if (p != point) {
+            if (point != null) {
+                point.xProperty().removeListener(moved);
+                point.yProperty().removeListener(moved);
+            }
+            if (p != null) {
+                p.xProperty().addListener(moved);
+                p.yProperty().addListener(moved);
+            }
+            point = p;
+        }
+        show(p);
+    }
+
+    private void show(Point p) {
+        if (p == null) {
+            setText(null);
+            return;
+        }
+        text.setLength(0);
+        setText(PointFormat.append(text, p.getX(), p.getY()).toString());
+    }
+}
@@ -0,0 +1,163 @@
+package point.convexhull;
+
+import point.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A class that finds an approximate convex hull in O(n + 1/epsilon)
+ * time, however many vertices the exact hull has. This is the
+ * algorithm of Bentley, Faust and Preparata: the points are split into
+ * k = ceil(1/epsilon) vertical strips of equal width, only the lowest
+ * and the highest point of each strip are kept, and the hull of those
+ * at most 2k + 4 points is found with a monotone chain that visits the
+ * strips in order, without sorting. When 1/epsilon is at least n, the
+ * exact hull is found instead by sorting the points.
+ *
+ * Every point of the input is either inside the returned hull or
+ * within epsilon * D of it, where D is the diameter of the points
+ * (the width of a strip is at most D / k). The returned vertices are
+ * points of the input.
+ */
+public final class ApproximateHull {
+
+    // the smallest number of points that a task of the parallel pass
+    // handles, and the largest number of tasks
+    private static final int CHUNK = 1 << 16;
+    private static final int PARALLELISM = 4 * Runtime.getRuntime().availableProcessors();
+
+    private ApproximateHull() {
+    }
+
+    /**
+     * Returns the approximate convex hull of the given points in the
+     * same form as ConvexHullPane.getConvexHull(): the vertices in
+     * order around the hull, ending with the first one again.
+     *
+     * @param points  the list of points
+     * @param epsilon the tolerance relative to the diameter
+     * @return the vertices of the approximate hull
+     */
+    public static List<Point> of(List<Point> points, double epsilon) {
+        double[] x = points.stream().mapToDouble(Point::getX).toArray();
+        double[] y = points.stream().mapToDouble(Point::getY).toArray();
+
+        List<Point> hull = new ArrayList<>();
+        for (int i : of(x, y, epsilon))
+            hull.add(points.get(i));
+        return hull;
+    }
+
+    /**
+     * Returns the approximate convex hull of the points with the given
+     * coordinates.
+     *
+     * @param x       the x-coordinates of the points
+     * @param y       the y-coordinates of the points
+     * @param epsilon the tolerance relative to the diameter
+     * @return the indices of the vertices in order around the hull,
+     *         ending with the first one again
+     */
+    public static int[] of(double[] x, double[] y, double epsilon) {
+        int n = x.length;
+        if (n < 2 || y.length != n)
+            throw new IllegalArgumentException("size < 2");
+        if (!(epsilon > 0))
+            throw new IllegalArgumentException("epsilon <= 0");
+
+        // with at least as many strips as points, the exact hull is cheaper
+        if (1 / epsilon >= n)
+            return MonotoneChain.hull(x, y);
+
+        int k = (int) Math.ceil(1 / epsilon);
+        int chunk = Math.max(CHUNK, (n + PARALLELISM - 1) / PARALLELISM);
+        int chunks = (n + chunk - 1) / chunk;
+
+        // the leftmost and the rightmost points, the lowest and the
+        // highest of them on ties
+        int[] ends = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> ends(x, y, c * chunk, Math.min(n, (c + 1) * chunk)))
+                .reduce((a, b) -> merge(x, y, a, b))
+                .get();
+        double minX = x[ends[0]], maxX = x[ends[2]];
+        double scale = (maxX > minX) ? k / (maxX - minX) : 0;
+
+        // the lowest and the highest point of each strip
+        int[] strips = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> {
+                    int[] s = new int[2 * k];
+                    Arrays.fill(s, -1);
+                    for (int i = c * chunk, to = Math.min(n, (c + 1) * chunk); i < to; i++)
+                        keep(y, s, strip(x[i], minX, scale, k), i);
+                    return s;
+                })
+                .reduce((a, b) -> {
+                    for (int s = 0; s < k; s++) {
+                        if (b[2 * s] >= 0) {
+                            keep(y, a, s, b[2 * s]);
+                            keep(y, a, s, b[2 * s + 1]);
+                        }
+                    }
+                    return a;
+                })
+                .get();
+
+        // the candidates from left to right, on the bottom and on the top
+        int[] bottom = new int[k + 2];
+        int[] top = new int[k + 2];
+        int size = 0;
+        bottom[size] = ends[0];
+        top[size++] = ends[1];
+        for (int s = 0; s < k; s++) {
+            if (strips[2 * s] >= 0) {
+                bottom[size] = strips[2 * s];
+                top[size++] = strips[2 * s + 1];
+            }
+        }
+        bottom[size] = ends[2];
+        top[size++] = ends[3];
+
+        return MonotoneChain.chain(x, y, bottom, top, size);
+    }
+
+    private static int strip(double x, double minX, double scale, int k) {
+        return Math.min((int) ((x - minX) * scale), k - 1);
+    }
+
+    // keeps i in strip s if it is lower or higher than what is there
+    private static void keep(double[] y, int[] strips, int s, int i) {
+        if (strips[2 * s] < 0 || y[i] < y[strips[2 * s]])
+            strips[2 * s] = i;
+        if (strips[2 * s + 1] < 0 || y[i] > y[strips[2 * s + 1]])
+            strips[2 * s + 1] = i;
+    }
+
+    // the lowest and highest leftmost and rightmost points of x[from..to)
+    private static int[] ends(double[] x, double[] y, int from, int to) {
+        int[] ends = {from, from, from, from};
+        for (int i = from + 1; i < to; i++)
+            extend(x, y, ends, i);
+        return ends;
+    }
+
+    private static int[] merge(double[] x, double[] y, int[] a, int[] b) {
+        for (int i : b)
+            extend(x, y, a, i);
+        return a;
+    }
+
+    // replaces the ends that i is further out than
+    private static void extend(double[] x, double[] y, int[] ends, int i) {
+        if (x[i] < x[ends[0]] || (x[i] == x[ends[0]] && y[i] < y[ends[0]]))
+            ends[0] = i;
+        if (x[i] < x[ends[1]] || (x[i] == x[ends[1]] && y[i] > y[ends[1]]))
+            ends[1] = i;
+        if (x[i] > x[ends[2]] || (x[i] == x[ends[2]] && y[i] < y[ends[2]]))
+            ends[2] = i;
+        if (x[i] > x[ends[3]] || (x[i] == x[ends[3]] && y[i] > y[ends[3]]))
+            ends[3] = i;
+    }
+}
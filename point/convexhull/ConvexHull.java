@@ -5,9 +5,15 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.input.MouseButton;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
+import point.replay.ScriptRecorder;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Created by Z on 10.20.
@@ -17,26 +23,71 @@ import javafx.stage.Stage;
  *
  * This program provides a UI for plotting points and finding the
  * convex hull of the plotted points.
+ *
+ * When it is started with --record=path, what is done on the pane is
+ * recorded to a script at that path, for InteractionReplay to play back.
  */
 public class ConvexHull extends Application {
 
+    // the recorder of the script, if one is given
+    private ScriptRecorder recorder;
+
     @Override
     public void start(Stage primaryStage) {
         ConvexHullPane pane = new ConvexHullPane();
 
         Button btSolve = new Button("Solve");
         Button btReset = new Button("Reset");
+        CheckBox ckbCalipers = new CheckBox("Calipers");
+        CheckBox ckbLayers = new CheckBox("Layers");
 
-        pane.setOnMouseClicked(mouse -> pane.add(mouse.getX(), mouse.getY()));
+        // add a point where the primary button is clicked; the middle
+        // button is left to panning the pane
+        pane.setOnMouseClicked(mouse -> {
+            if (mouse.getButton() == MouseButton.PRIMARY) {
+                record("click", mouse.getX(), mouse.getY());
+                pane.add(pane.toWorldX(mouse.getX()), pane.toWorldY(mouse.getY()));
+            }
+        });
 
-        btSolve.setOnAction(event -> pane.solve());
+        btSolve.setOnAction(event -> {
+            record("solve");
+            pane.solve();
+        });
 
-        btReset.setOnAction(event -> pane.clear());
+        btReset.setOnAction(event -> {
+            record("clear");
+            pane.clear();
+        });
+
+        // when the calipers check box is selected/unselected, show/hide the
+        // diameter, the width and the smallest bounding rectangle of the hull
+        ckbCalipers.setOnAction(event -> {
+            record("calipers " + (ckbCalipers.isSelected() ? "on" : "off"));
+            pane.setCalipersShown(ckbCalipers.isSelected());
+        });
+
+        // when the layers check box is selected/unselected, show/hide all the
+        // convex layers of the points instead of only the hull
+        ckbLayers.setOnAction(event -> {
+            record("layers " + (ckbLayers.isSelected() ? "on" : "off"));
+            pane.setLayersShown(ckbLayers.isSelected());
+        });
 
         HBox buttons = new HBox(10);
         buttons.setPadding(new Insets(10));
         buttons.setAlignment(Pos.CENTER);
-        buttons.getChildren().addAll(btSolve, btReset);
+        buttons.getChildren().addAll(ckbCalipers, ckbLayers, btSolve, btReset);
+
+        // record to the script, if one is given
+        String script = getParameters().getNamed().get("record");
+        if (script != null) {
+            try {
+                recorder = new ScriptRecorder(Paths.get(script), "hull", pane);
+            } catch (IOException e) {
+                System.err.println("Cannot record to " + script + ": " + e.getMessage());
+            }
+        }
 
         BorderPane root = new BorderPane();
         root.setPadding(new Insets(10));
@@ -49,4 +100,20 @@ public class ConvexHull extends Application {
         primaryStage.setScene(scene);
         primaryStage.show();
     }
+
+    // records an action, if a script is being recorded
+    private void record(String action, double... args) {
+        if (recorder != null)
+            recorder.record(action, args);
+    }
+
+    /**
+     * Close the script, if one is being recorded, so that the last
+     * actions are written to it.
+     */
+    @Override
+    public void stop() throws IOException {
+        if (recorder != null)
+            recorder.close();
+    }
 }
@@ -0,0 +1,307 @@
+package point.convexhull;
+
+import point.PointStore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that finds the convex hull of a set of points in space with
+ * the quickhull algorithm. It starts from a tetrahedron of four extreme
+ * points, and every point outside it is put in the outside set of one
+ * face it can see. Then, as long as a face has points outside, the one
+ * farthest from it is added to the hull: the faces it can see are
+ * removed, the hole is closed with new faces from the point to the edges
+ * around it, and the points outside the removed faces are given to the
+ * new ones. A point inside the hull is dropped the first time it is
+ * found to be, so on most inputs this takes O(n log n) time.
+ *
+ * Points closer to a face than a small tolerance, which depends on the
+ * magnitude of the coordinates, are taken to be on it, so a flat face
+ * may be made of more than one triangle.
+ */
+public final class ConvexHull3D {
+
+    /**
+     * A triangle of the hull, with its vertices counter-clockwise seen
+     * from outside. The neighbour i is the face across the edge from
+     * vertex i to vertex i + 1.
+     */
+    private static final class Face {
+        final int[] v;
+        final Face[] neighbor = new Face[3];
+        final double nx, ny, nz, offset;
+
+        // the points outside this face that no other face has taken
+        int[] outside = new int[4];
+        int size;
+        boolean removed;
+
+        Face(double[] c, int a, int b, int d) {
+            v = new int[] {a, b, d};
+            double ux = c[3 * b] - c[3 * a], uy = c[3 * b + 1] - c[3 * a + 1], uz = c[3 * b + 2] - c[3 * a + 2];
+            double wx = c[3 * d] - c[3 * a], wy = c[3 * d + 1] - c[3 * a + 1], wz = c[3 * d + 2] - c[3 * a + 2];
+            double x = uy * wz - uz * wy, y = uz * wx - ux * wz, z = ux * wy - uy * wx;
+            double length = Math.sqrt(x * x + y * y + z * z);
+            nx = x / length;
+            ny = y / length;
+            nz = z / length;
+            offset = nx * c[3 * a] + ny * c[3 * a + 1] + nz * c[3 * a + 2];
+        }
+
+        // the signed distance of point p above the plane of this face
+        double distance(double[] c, int p) {
+            return nx * c[3 * p] + ny * c[3 * p + 1] + nz * c[3 * p + 2] - offset;
+        }
+
+        void addOutside(int p) {
+            if (size == outside.length)
+                outside = Arrays.copyOf(outside, 2 * size);
+            outside[size++] = p;
+        }
+    }
+
+    private final double[] c;
+    private final int n;
+    private final double tolerance;
+    private final List<Face> faces = new ArrayList<>();
+
+    private ConvexHull3D(double[] c, int n) {
+        this.c = c;
+        this.n = n;
+
+        double max = 0;
+        for (int i = 0; i < 3 * n; i++)
+            max = Math.max(max, Math.abs(c[i]));
+        this.tolerance = 3 * 3 * max * Math.ulp(1.0);
+    }
+
+    /**
+     * Finds the convex hull of the given points in space.
+     *
+     * @param points the points, of dimension 3
+     * @return the indices of the vertices of the triangles of the hull,
+     *         three for each triangle, counter-clockwise seen from outside
+     */
+    public static int[] of(PointStore points) {
+        if (points.dimension() != 3)
+            throw new IllegalArgumentException("dimension != 3");
+        if (points.size() < 4)
+            throw new IllegalArgumentException("size < 4");
+
+        ConvexHull3D hull = new ConvexHull3D(points.coordinates(), points.size());
+        hull.build();
+        return hull.triangles();
+    }
+
+    /**
+     * Finds the convex hull of the points with the given coordinates.
+     *
+     * @see #of(PointStore)
+     */
+    public static int[] of(double[] x, double[] y, double[] z) {
+        if (x.length != y.length || x.length != z.length)
+            throw new IllegalArgumentException("x, y and z differ in length");
+
+        double[] c = new double[3 * x.length];
+        for (int i = 0; i < x.length; i++) {
+            c[3 * i] = x[i];
+            c[3 * i + 1] = y[i];
+            c[3 * i + 2] = z[i];
+        }
+        return of(new PointStore(3, c));
+    }
+
+    private void build() {
+        Deque<Face> pending = new ArrayDeque<>();
+        for (Face f : tetrahedron())
+            if (f.size > 0)
+                pending.push(f);
+
+        while (!pending.isEmpty()) {
+            Face face = pending.pop();
+            if (face.removed || face.size == 0)
+                continue;
+
+            // the point farthest outside the face is a vertex of the hull
+            int eye = face.outside[0];
+            double far = face.distance(c, eye);
+            for (int i = 1; i < face.size; i++) {
+                double dist = face.distance(c, face.outside[i]);
+                if (dist > far) {
+                    far = dist;
+                    eye = face.outside[i];
+                }
+            }
+
+            // the faces the point can see, and the edges around them
+            List<Face> visible = new ArrayList<>();
+            List<Face> horizon = new ArrayList<>();
+            List<Integer> horizonEdge = new ArrayList<>();
+            face.removed = true;
+            visible.add(face);
+            for (int i = 0; i < visible.size(); i++) {
+                Face f = visible.get(i);
+                for (int e = 0; e < 3; e++) {
+                    Face g = f.neighbor[e];
+                    if (g.removed)
+                        continue;
+                    if (g.distance(c, eye) > tolerance) {
+                        g.removed = true;
+                        visible.add(g);
+                    } else {
+                        horizon.add(f);
+                        horizonEdge.add(e);
+                    }
+                }
+            }
+
+            // a new face from every edge of the horizon to the point
+            Map<Integer, Face> byStart = new HashMap<>();
+            Map<Integer, Face> byEnd = new HashMap<>();
+            List<Face> created = new ArrayList<>();
+            for (int h = 0; h < horizon.size(); h++) {
+                Face f = horizon.get(h);
+                int e = horizonEdge.get(h);
+                int a = f.v[e], b = f.v[(e + 1) % 3];
+
+                Face g = f.neighbor[e];
+                Face added = new Face(c, a, b, eye);
+                added.neighbor[0] = g;
+                g.neighbor[indexOfEdge(g, b, a)] = added;
+
+                byStart.put(a, added);
+                byEnd.put(b, added);
+                created.add(added);
+                faces.add(added);
+            }
+            for (Face f : created) {
+                f.neighbor[1] = byStart.get(f.v[1]);
+                f.neighbor[2] = byEnd.get(f.v[0]);
+            }
+
+            // give the points outside the removed faces to the new ones
+            for (Face f : visible) {
+                for (int i = 0; i < f.size; i++) {
+                    int p = f.outside[i];
+                    if (p != eye)
+                        assign(p, created);
+                }
+                f.outside = null;
+            }
+            for (Face f : created)
+                if (f.size > 0)
+                    pending.push(f);
+        }
+    }
+
+    // the four faces of a tetrahedron of extreme points, with every other
+    // point put outside one of them
+    private List<Face> tetrahedron() {
+        // the two farthest apart of the points extreme on an axis
+        int[] extreme = new int[6];
+        for (int i = 1; i < n; i++)
+            for (int k = 0; k < 3; k++) {
+                if (c[3 * i + k] < c[3 * extreme[k] + k])
+                    extreme[k] = i;
+                if (c[3 * i + k] > c[3 * extreme[k + 3] + k])
+                    extreme[k + 3] = i;
+            }
+        int a = extreme[0], b = extreme[3];
+        for (int k = 1; k < 3; k++)
+            if (c[3 * extreme[k + 3] + k] - c[3 * extreme[k] + k] > distance(a, b)) {
+                a = extreme[k];
+                b = extreme[k + 3];
+            }
+
+        // the point farthest from the line ab, then from the plane abd
+        int d = -1;
+        double far = tolerance;
+        for (int i = 0; i < n; i++) {
+            double dist = distanceFromLine(a, b, i);
+            if (dist > far) {
+                far = dist;
+                d = i;
+            }
+        }
+        if (d < 0)
+            throw new IllegalArgumentException("points are collinear");
+
+        Face base = new Face(c, a, b, d);
+        int top = -1;
+        far = tolerance;
+        for (int i = 0; i < n; i++) {
+            double dist = Math.abs(base.distance(c, i));
+            if (dist > far) {
+                far = dist;
+                top = i;
+            }
+        }
+        if (top < 0)
+            throw new IllegalArgumentException("points are coplanar");
+
+        // every face must have the top point, or the base, below it
+        if (base.distance(c, top) > 0) {
+            int t = b;
+            b = d;
+            d = t;
+            base = new Face(c, a, b, d);
+        }
+        Face[] tetrahedron = {base, new Face(c, a, top, b), new Face(c, b, top, d), new Face(c, d, top, a)};
+        for (Face f : tetrahedron)
+            for (Face g : tetrahedron)
+                for (int e = 0; e < 3; e++)
+                    if (f != g && indexOfEdge(g, f.v[(e + 1) % 3], f.v[e]) >= 0)
+                        f.neighbor[e] = g;
+        faces.addAll(Arrays.asList(tetrahedron));
+
+        for (int i = 0; i < n; i++)
+            if (i != a && i != b && i != d && i != top)
+                assign(i, Arrays.asList(tetrahedron));
+        return Arrays.asList(tetrahedron);
+    }
+
+    // puts p outside the first of the faces it is above, if any
+    private void assign(int p, List<Face> candidates) {
+        for (Face f : candidates)
+            if (f.distance(c, p) > tolerance) {
+                f.addOutside(p);
+                return;
+            }
+    }
+
+    // the index of the edge from a to b in face f, or -1
+    private static int indexOfEdge(Face f, int a, int b) {
+        for (int e = 0; e < 3; e++)
+            if (f.v[e] == a && f.v[(e + 1) % 3] == b)
+                return e;
+        return -1;
+    }
+
+    private double distance(int a, int b) {
+        double dx = c[3 * a] - c[3 * b], dy = c[3 * a + 1] - c[3 * b + 1], dz = c[3 * a + 2] - c[3 * b + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private double distanceFromLine(int a, int b, int p) {
+        double ux = c[3 * b] - c[3 * a], uy = c[3 * b + 1] - c[3 * a + 1], uz = c[3 * b + 2] - c[3 * a + 2];
+        double wx = c[3 * p] - c[3 * a], wy = c[3 * p + 1] - c[3 * a + 1], wz = c[3 * p + 2] - c[3 * a + 2];
+        double x = uy * wz - uz * wy, y = uz * wx - ux * wz, z = ux * wy - uy * wx;
+        return Math.sqrt(x * x + y * y + z * z) / Math.sqrt(ux * ux + uy * uy + uz * uz);
+    }
+
+    private int[] triangles() {
+        int[] triangles = new int[3 * faces.size()];
+        int t = 0;
+        for (Face f : faces)
+            if (!f.removed)
+                for (int v : f.v)
+                    triangles[t++] = v;
+        return Arrays.copyOf(triangles, t);
+    }
+}
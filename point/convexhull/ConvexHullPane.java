@@ -2,8 +2,12 @@ package point.convexhull;
 
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.Shape;
 import point.PlotPane;
 import point.Point;
+import point.PointKernels;
 
 import java.util.*;
 
@@ -29,59 +33,183 @@ public final class ConvexHullPane extends PlotPane {
         super(width, height);
     }
 
+    /**
+     * Stores the vertices of the last convex hull found and provides
+     * a getter method for it.
+     */
+    private List<Point> hull;
+
+    public List<Point> getHull() {
+        return (hull == null) ? Collections.emptyList() : Collections.unmodifiableList(hull);
+    }
+
+    // the shapes of the last solution drawn on the pane
+    private final List<Shape> solution = new ArrayList<>();
+
+    /**
+     * Provide an option to draw the diameter, the width and the
+     * smallest bounding rectangle of the hull when it is solved.
+     * A getter and a setter is provided as well.
+     */
+    private boolean calipersShown;
+
+    public boolean isCalipersShown() {
+        return calipersShown;
+    }
+
+    public void setCalipersShown(boolean calipersShown) {
+        this.calipersShown = calipersShown;
+
+        // redraw the solution if there is one
+        if (hull != null)
+            solve();
+    }
+
+    /**
+     * Provide an option to draw all the convex layers of the points, each
+     * in a colour of its own, instead of only the hull. A getter and a
+     * setter is provided as well.
+     */
+    private boolean layersShown;
+
+    public boolean isLayersShown() {
+        return layersShown;
+    }
+
+    public void setLayersShown(boolean layersShown) {
+        this.layersShown = layersShown;
+
+        // redraw the solution if there is one
+        if (hull != null)
+            solve();
+    }
+
+    /**
+     * Provide an approximate mode for large sets of points. When epsilon
+     * is greater than 0, the hull is found by ApproximateHull to within
+     * epsilon times the diameter of the points; when it is 0, the exact
+     * hull is found. A getter and a setter is provided as well.
+     */
+    private double epsilon;
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public void setEpsilon(double epsilon) {
+        if (epsilon < 0)
+            throw new IllegalArgumentException("epsilon < 0");
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Call clear() in superclass and reset the hull to null.
+     *
+     * @see PlotPane#clear()
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        solution.clear();
+        hull = null;
+    }
+
+    /**
+     * Solve for the convex hull and draw it, replacing the previous
+     * solution on the pane.
+     */
     public void solve() {
-        List<Point> convex = getConvexHull(points);
-        for (int i = 0, j = 1; j < convex.size(); i++, j++) {
-            Point p1 = convex.get(i);
-            Point p2 = convex.get(j);
-
-            Line line = new Line(p1.getX(), p1.getY(), p2.getX(), p2.getY());
-            line.setStroke(Color.DARKSLATEGRAY);
-            getChildren().add(line);
+        getPlotChildren().removeAll(solution);
+        solution.clear();
+
+        List<Point> convex = hull = (epsilon > 0) ? ApproximateHull.of(points, epsilon) : getConvexHull(points);
+        if (layersShown) {
+            // one line around each layer, the hues a golden angle apart
+            ConvexLayers layers = new ConvexLayers(points);
+            for (int k = 0; k < layers.numOfLayers(); k++) {
+                Polyline line = new Polyline();
+                for (int i : layers.layer(k))
+                    line.getPoints().addAll(points.get(i).getX(), points.get(i).getY());
+                line.setStroke(Color.hsb(k * 137.508 % 360, 0.8, 0.7));
+                solution.add(line);
+            }
+        } else {
+            for (int i = 0, j = 1; j < convex.size(); i++, j++)
+                draw(convex.get(i), convex.get(j), Color.DARKSLATEGRAY);
+            draw(convex.get(0), convex.get(convex.size() - 1), Color.DARKSLATEGRAY);
+        }
+
+        if (calipersShown) {
+            RotatingCalipers calipers = new RotatingCalipers(convex);
+
+            List<Point> diameter = calipers.diameter();
+            draw(diameter.get(0), diameter.get(1), Color.CRIMSON);
+
+            List<Point> width = calipers.width();
+            draw(width.get(0), width.get(1), Color.ROYALBLUE);
+
+            Polygon rectangle = new Polygon();
+            for (Point p : calipers.minAreaRectangle())
+                rectangle.getPoints().addAll(p.getX(), p.getY());
+            rectangle.setFill(null);
+            rectangle.setStroke(Color.DARKGREEN);
+            rectangle.getStrokeDashArray().addAll(4.0 / getScale(), 4.0 / getScale());
+            solution.add(rectangle);
         }
 
-        Line l = new Line(
-                convex.get(0).getX(),
-                convex.get(0).getY(),
-                convex.get(convex.size() - 1).getX(),
-                convex.get(convex.size() - 1).getY()
-        );
-        l.setStroke(Color.DARKSLATEGRAY);
-        getChildren().add(l);
+        getPlotChildren().addAll(solution);
     }
 
-    private List<Point> getConvexHull(List<Point> points) {
+    // helper method for drawing a line of the solution
+    private void draw(Point p1, Point p2, Color color) {
+        Line line = new Line(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+        line.setStroke(color);
+        solution.add(line);
+    }
+
+    /**
+     * Find the convex hull of the given points using the gift-wrapping
+     * algorithm in chapter 22 of the book. The vertices are returned
+     * in order around the hull, starting from the rightmost lowest
+     * point and ending with it again.
+     *
+     * @param points the list of points
+     * @return the vertices of the convex hull
+     */
+    public static List<Point> getConvexHull(List<Point> points) {
         if (points.size() < 2)
             throw new IllegalArgumentException("size < 2");
 
-        List<Point> convexHull = new LinkedList<>();
-        Point start;
-        convexHull.add(start = getRightmostLowest(points));
+        // copy the coordinates once, so that the scan over all points
+        // for every vertex runs on primitive arrays
+        int n = points.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        int i = 0;
+        for (Point p : points) {
+            x[i] = p.getX();
+            y[i++] = p.getY();
+        }
+
+        PointKernels kernels = PointKernels.get();
+        List<Point> convexHull = new ArrayList<>();
+        int start = points.indexOf(getRightmostLowest(points));
+        convexHull.add(points.get(start));
 
         // all points of the convex hull should be added to the list
         // after this loop
-        Point p2 = start;
+        int p2 = start;
         do {
-            Point p1 = p2;
-            p2 = start;
-
-            // p2 should be the next point in the convex hull after this loop
-            for (Point p : points) {
-                // >0 left; =0 on-line; <0 right
-                double direction = (p2.getX() - p1.getX()) * (p.getY() - p1.getY()) -
-                        (p.getX() - p1.getX()) * (p2.getY() - p1.getY());
-
-                if (direction > 0 || (direction == 0 && p1.distance(p) > p1.distance(p2)))
-                    p2 = p;
-            }
+            // p2 should be the next point in the convex hull after this scan
+            p2 = kernels.nextHullVertex(x, y, n, p2, start);
 
-            convexHull.add(p2); // add t1 to the convex hull list
-        } while (!p2.equals(start));
+            convexHull.add(points.get(p2)); // add p2 to the convex hull list
+        } while (x[p2] != x[start] || y[p2] != y[start]);
 
         return convexHull;
     }
 
-    private List<Point> getConvexHull2(List<Point> points) {
+    private static List<Point> getConvexHull2(List<Point> points) {
         Point start = getRightmostLowest(points);
         List<Point> copy = new ArrayList<>(points);
         copy.sort((p1, p2) -> {
@@ -120,7 +248,7 @@ public final class ConvexHullPane extends PlotPane {
         return new ArrayList<>(convexHull);
     }
 
-    private Point getRightmostLowest(List<Point> list) {
+    private static Point getRightmostLowest(List<Point> list) {
         if (list.isEmpty())
             throw new IllegalArgumentException("empty list");
 
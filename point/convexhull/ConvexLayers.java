@@ -0,0 +1,297 @@
+package point.convexhull;
+
+import point.IndexSort;
+import point.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class that peels a set of points into its convex layers: the first
+ * layer is the convex hull, the second is the hull of the points left
+ * once the first is removed, and so on. The depth of a point is the
+ * index of its layer, so points with a small depth are the outliers.
+ *
+ * Instead of finding every hull from scratch, the points are sorted on
+ * x once and kept at the leaves of a balanced tree, where every node
+ * holds the upper and the lower chain of the hull of the points below
+ * it. The chains of a node are merged from the chains of its children
+ * with one monotone chain pass over them, which only takes as long as
+ * the chains are. When a layer is removed, only the nodes above its
+ * points are merged again, so on most inputs the whole peel takes
+ * about O(n log^2 n) time instead of O(n^2).
+ *
+ * Points on an edge of a layer, and copies of a point, are in the layer.
+ */
+public final class ConvexLayers {
+
+    // the coordinates in x-major order, and the input index of each
+    private final double[] xs;
+    private final double[] ys;
+    private final int[] order;
+
+    // the tree of chains; node i has children 2i and 2i + 1, and the
+    // leaves start at size. A chain holds positions in x-major order,
+    // at the start of an array that is kept and written over while it
+    // is long enough, since allocating millions of short-lived chains
+    // costs far more than merging them.
+    private final int size;
+    private final int[][] upper;
+    private final int[][] lower;
+    private final int[] upperLength;
+    private final int[] lowerLength;
+
+    // the nodes whose upper or lower chain lost a point
+    private final boolean[] dirtyUpper;
+    private final boolean[] dirtyLower;
+    private int[] dirty = new int[64];
+    private int numOfDirty;
+
+    // the chain being merged, before it is copied to its node
+    private final int[] scratch;
+
+    private final int[] depth;
+    private final List<int[]> layers = new ArrayList<>();
+
+    /**
+     * Peels the given points into their convex layers.
+     *
+     * @param points the list of points
+     */
+    public ConvexLayers(List<Point> points) {
+        this(xOf(points), yOf(points));
+    }
+
+    /**
+     * Peels the points with the given coordinates into their convex
+     * layers.
+     *
+     * @param x the x-coordinates of the points
+     * @param y the y-coordinates of the points
+     */
+    public ConvexLayers(double[] x, double[] y) {
+        if (x.length != y.length)
+            throw new IllegalArgumentException("x.length != y.length");
+
+        int n = x.length;
+        order = IndexSort.sort(n, x, y);
+        xs = new double[n];
+        ys = new double[n];
+        for (int p = 0; p < n; p++) {
+            xs[p] = x[order[p]];
+            ys[p] = y[order[p]];
+        }
+
+        int s = 1;
+        while (s < n)
+            s <<= 1;
+        size = s;
+        upper = new int[2 * size][];
+        lower = new int[2 * size][];
+        upperLength = new int[2 * size];
+        lowerLength = new int[2 * size];
+        dirtyUpper = new boolean[2 * size];
+        dirtyLower = new boolean[2 * size];
+        depth = new int[n];
+        scratch = new int[n];
+
+        for (int p = 0; p < n; p++) {
+            upper[size + p] = lower[size + p] = new int[] {p};
+            upperLength[size + p] = lowerLength[size + p] = 1;
+        }
+        for (int node = size - 1; node >= 1; node--) {
+            merge(node, upper, upperLength, 1);
+            merge(node, lower, lowerLength, -1);
+        }
+
+        peel();
+    }
+
+    private static double[] xOf(List<Point> points) {
+        double[] x = new double[points.size()];
+        int i = 0;
+        for (Point p : points)
+            x[i++] = p.getX();
+        return x;
+    }
+
+    private static double[] yOf(List<Point> points) {
+        double[] y = new double[points.size()];
+        int i = 0;
+        for (Point p : points)
+            y[i++] = p.getY();
+        return y;
+    }
+
+    /**
+     * Returns the number of layers.
+     *
+     * @return number of layers
+     */
+    public int numOfLayers() {
+        return layers.size();
+    }
+
+    /**
+     * Returns the points of a layer in order around it, starting from
+     * its leftmost lowest point and ending with it again, as the hull
+     * returned by ConvexHullPane.getConvexHull(). If all the points of
+     * the layer are on a line, the line is gone over both ways.
+     *
+     * @param k the index of the layer, 0 for the convex hull
+     * @return the indices of the points of the layer
+     */
+    public int[] layer(int k) {
+        return layers.get(k).clone();
+    }
+
+    /**
+     * Returns the depth of the point of the given index, which is the
+     * index of the layer it is in.
+     *
+     * @param i the index of the point
+     * @return the depth of the point
+     */
+    public int depth(int i) {
+        return depth[i];
+    }
+
+    /**
+     * Returns the depth of every point.
+     *
+     * @return the depths, by the index of the point
+     */
+    public int[] depths() {
+        return depth.clone();
+    }
+
+    // removes the layers one by one until no point is left
+    private void peel() {
+        while (upperLength[1] > 0) {
+            int[] top = upper[1], bottom = lower[1];
+            int topLength = upperLength[1], bottomLength = lowerLength[1];
+            int k = layers.size();
+
+            // the lower chain from left to right, then the upper one back;
+            // both start at the first point left and end at the last one
+            int[] ring = new int[bottomLength + topLength - 1];
+            int r = 0;
+            for (int i = 0; i < bottomLength; i++)
+                ring[r++] = order[bottom[i]];
+            for (int i = topLength - 2; i >= 0; i--)
+                ring[r++] = order[top[i]];
+            layers.add(ring);
+
+            remove(top, topLength, k);
+            remove(bottom, bottomLength, k);
+            rebuild();
+        }
+    }
+
+    // takes the points of a chain out of the tree, and marks the nodes
+    // whose chains they are on; the chain of a node that a point is not
+    // on stays the same without it, and neither is the point on the
+    // chains of the nodes above
+    private void remove(int[] chain, int length, int k) {
+        for (int i = 0; i < length; i++) {
+            int p = chain[i], leaf = size + p;
+            if (upperLength[leaf] == 0)
+                continue;
+
+            depth[order[p]] = k;
+            upperLength[leaf] = lowerLength[leaf] = 0;
+            for (int node = leaf >> 1; node >= 1 && Arrays.binarySearch(upper[node], 0, upperLength[node], p) >= 0; node >>= 1)
+                mark(node, dirtyUpper);
+            for (int node = leaf >> 1; node >= 1 && Arrays.binarySearch(lower[node], 0, lowerLength[node], p) >= 0; node >>= 1)
+                mark(node, dirtyLower);
+        }
+    }
+
+    private void mark(int node, boolean[] flags) {
+        if (flags[node])
+            return;
+        flags[node] = true;
+        if (!dirtyUpper[node] || !dirtyLower[node]) {
+            if (numOfDirty == dirty.length)
+                dirty = Arrays.copyOf(dirty, 2 * numOfDirty);
+            dirty[numOfDirty++] = node;
+        }
+    }
+
+    // merges the marked chains again, the deepest nodes first, as the
+    // nodes of a level come after all the nodes above it
+    private void rebuild() {
+        Arrays.sort(dirty, 0, numOfDirty);
+        for (int i = numOfDirty - 1; i >= 0; i--) {
+            int node = dirty[i];
+            if (dirtyUpper[node])
+                merge(node, upper, upperLength, 1);
+            if (dirtyLower[node])
+                merge(node, lower, lowerLength, -1);
+            dirtyUpper[node] = dirtyLower[node] = false;
+        }
+        numOfDirty = 0;
+    }
+
+    // merges the chains of the children of the node into its own
+    private void merge(int node, int[][] chains, int[] lengths, int side) {
+        int h = chain(chains[2 * node], lengths[2 * node], chains[2 * node + 1], lengths[2 * node + 1], side);
+        if (chains[node] == null || chains[node].length < h)
+            chains[node] = new int[h];
+        System.arraycopy(scratch, 0, chains[node], 0, h);
+        lengths[node] = h;
+    }
+
+    // the chain over the points of a and then b, dropping the points that
+    // turn the wrong way: to the left for the upper chain (side 1), to
+    // the right for the lower one (side -1); points in line are kept.
+    // Both a and b are chains already, so only the end of a can be
+    // dropped, and once two points of b stay in a row, the rest of b
+    // stays as well and is copied without looking at it. The chain is
+    // left in scratch, and its length is returned.
+    private int chain(int[] a, int aLength, int[] b, int bLength, int side) {
+        int[] chain = scratch;
+        if (aLength + bLength == 0)
+            return 0;
+        if (aLength == 0 || bLength == 0) {
+            System.arraycopy(aLength == 0 ? b : a, 0, chain, 0, aLength + bLength);
+            return aLength + bLength;
+        }
+
+        System.arraycopy(a, 0, chain, 0, aLength);
+        int h = aLength;
+        for (int i = 0; i < bLength; i++) {
+            int p = b[i];
+            while (h >= 2) {
+                // the copies of the last point are kept or dropped together,
+                // and the turn is taken from the point before them
+                int copies = copiesOfLast(chain, h);
+                if (copies == 0 || side * cross(chain[copies - 1], chain[h - 1], p) <= 0)
+                    break;
+                h = copies;
+            }
+            chain[h++] = p;
+
+            int copies = copiesOfLast(chain, h);
+            if (copies > 0 && chain[copies - 1] >= b[0]) {
+                System.arraycopy(b, i + 1, chain, h, bLength - i - 1);
+                h += bLength - i - 1;
+                break;
+            }
+        }
+        return h;
+    }
+
+    // the index where the copies of the last point of the chain start
+    private int copiesOfLast(int[] chain, int h) {
+        int copies = h - 1;
+        while (copies > 0 && xs[chain[copies - 1]] == xs[chain[h - 1]] && ys[chain[copies - 1]] == ys[chain[h - 1]])
+            copies--;
+        return copies;
+    }
+
+    private double cross(int a, int b, int c) {
+        return (xs[b] - xs[a]) * (ys[c] - ys[a]) - (ys[b] - ys[a]) * (xs[c] - xs[a]);
+    }
+}
@@ -0,0 +1,167 @@
+package point.convexhull;
+
+import point.Point;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A class that tells whether points are inside, on or outside a convex
+ * hull in O(log h) time per point. The hull is split into a fan of
+ * triangles around its first vertex, the pivot; a query finds its
+ * wedge of the fan with a binary search and then checks the one edge
+ * of the hull that closes that wedge.
+ *
+ * The hull is given as its vertices in order around it, in either
+ * direction, as returned by ConvexHullPane.getConvexHull(); a closing
+ * vertex repeating the first one is allowed. The result of a query is
+ * INSIDE, ON or OUTSIDE.
+ */
+public final class HullLocator {
+
+    /**
+     * The results of a query, following the sign of an orientation
+     * test: >0 inside; =0 on the boundary; <0 outside.
+     */
+    public static final byte INSIDE = 1;
+    public static final byte ON = 0;
+    public static final byte OUTSIDE = -1;
+
+    // the number of points that a task of locateAll handles
+    private static final int CHUNK = 1 << 14;
+
+    // the pivot and the other vertices relative to it, counter-clockwise
+    private final double px;
+    private final double py;
+    private final double[] x;
+    private final double[] y;
+    private final int h;
+
+    /**
+     * Constructs a locator for the given hull vertices.
+     *
+     * @param hull the vertices of a convex hull in order
+     */
+    public HullLocator(List<Point> hull) {
+        if (hull.isEmpty())
+            throw new IllegalArgumentException("empty hull");
+
+        int n = hull.size();
+        if (n > 1 && hull.get(0).equals(hull.get(n - 1)))
+            n--;
+
+        px = hull.get(0).getX();
+        py = hull.get(0).getY();
+        x = new double[n];
+        y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = hull.get(i).getX() - px;
+            y[i] = hull.get(i).getY() - py;
+        }
+        h = n;
+
+        // the binary search assumes a counter-clockwise order
+        double area = 0;
+        for (int i = 0; i < h; i++)
+            area += x[i] * y[(i + 1) % h] - x[(i + 1) % h] * y[i];
+        if (area < 0) {
+            reverse(x);
+            reverse(y);
+        }
+    }
+
+    /**
+     * Locates the given point with respect to the hull.
+     *
+     * @param p the point
+     * @return INSIDE, ON or OUTSIDE
+     */
+    public byte locate(Point p) {
+        return locate(p.getX(), p.getY());
+    }
+
+    /**
+     * Locates the point with the given coordinates with respect to the
+     * hull.
+     *
+     * @param qx the x-coordinate
+     * @param qy the y-coordinate
+     * @return INSIDE, ON or OUTSIDE
+     */
+    public byte locate(double qx, double qy) {
+        qx -= px;
+        qy -= py;
+
+        // a point or a segment has no inside; a point is only on itself,
+        // as every query would be on the line through a single vertex
+        if (h == 1)
+            return (qx == 0 && qy == 0) ? ON : OUTSIDE;
+        if (h == 2) {
+            double ex = x[h - 1], ey = y[h - 1];
+            double t = qx * ex + qy * ey;
+            return (cross(ex, ey, qx, qy) == 0 && t >= 0 && t <= ex * ex + ey * ey) ? ON : OUTSIDE;
+        }
+
+        // outside the fan of triangles around the pivot
+        double first = cross(x[1], y[1], qx, qy);
+        double last = cross(x[h - 1], y[h - 1], qx, qy);
+        if (first < 0 || last > 0)
+            return OUTSIDE;
+
+        // the wedge between the vertices i and i + 1 that has the point
+        int lo = 1, hi = h - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (cross(x[mid], y[mid], qx, qy) >= 0)
+                lo = mid;
+            else
+                hi = mid;
+        }
+
+        // the side of the hull edge from i to i + 1
+        double side = cross(x[lo + 1] - x[lo], y[lo + 1] - y[lo], qx - x[lo], qy - y[lo]);
+        if (side < 0)
+            return OUTSIDE;
+        else if (side == 0)
+            return ON;
+
+        // the two edges out of the pivot are on the hull as well
+        if ((lo == 1 && first == 0) || (lo == h - 2 && last == 0))
+            return ON;
+        return INSIDE;
+    }
+
+    /**
+     * Locates all the points with the given coordinates in parallel.
+     *
+     * @param qx the x-coordinates of the points
+     * @param qy the y-coordinates of the points
+     * @return INSIDE, ON or OUTSIDE for each point
+     */
+    public byte[] locateAll(double[] qx, double[] qy) {
+        if (qx.length != qy.length)
+            throw new IllegalArgumentException("qx.length != qy.length");
+
+        int n = qx.length;
+        byte[] result = new byte[n];
+        IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+            for (int i = c * CHUNK, to = Math.min(n, (c + 1) * CHUNK); i < to; i++)
+                result[i] = locate(qx[i], qy[i]);
+        });
+        return result;
+    }
+
+    // >0 if b is to the left of a, both relative to the pivot
+    private static double cross(double ax, double ay, double bx, double by) {
+        return ax * by - ay * bx;
+    }
+
+    // reverses the order of the vertices after the pivot
+    private static void reverse(double[] a) {
+        for (int i = 1, j = a.length - 1; i < j; i++, j--) {
+            double t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package point.convexhull;
+
+import point.IndexSort;
+
+import java.util.Arrays;
+
+/**
+ * Andrew's monotone chain algorithm over primitive coordinate arrays.
+ * It finds the exact hull of a set of points in O(n log n) time without
+ * JavaFX, and is shared by the hull engines of this package that need
+ * the hull of a few candidates already in x-major order.
+ */
+public final class MonotoneChain {
+
+    // the directions of the octagon used to filter points, 45 degrees apart
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    private MonotoneChain() {
+    }
+
+    /**
+     * Returns the exact convex hull of the points with the given
+     * coordinates. The points that are extreme in eight directions
+     * form an octagon, and every point strictly inside it is dropped
+     * in one pass before the rest are sorted, so on most inputs only
+     * a small part of the points is sorted.
+     *
+     * @param x the x-coordinates of the points
+     * @param y the y-coordinates of the points
+     * @return the indices of the vertices in order around the hull,
+     *         ending with the first one again
+     */
+    public static int[] hull(double[] x, double[] y) {
+        int n = x.length;
+        if (n == 0)
+            throw new IllegalArgumentException("empty");
+
+        int[] extreme = new int[8];
+        for (int i = 1; i < n; i++)
+            for (int d = 0; d < 8; d++)
+                if (DX[d] * x[i] + DY[d] * y[i] > DX[d] * x[extreme[d]] + DY[d] * y[extreme[d]])
+                    extreme[d] = i;
+
+        // a point strictly to the left of every edge of the octagon is
+        // inside the hull, whatever order the extreme points are in
+        int[] kept = new int[n];
+        int size = 0;
+        int edges = 0;
+        for (int d = 0; d < 8; d++)
+            if (extreme[d] != extreme[(d + 1) % 8])
+                edges++;
+
+        for (int i = 0; i < n; i++) {
+            boolean inside = edges >= 3;
+            for (int d = 0; d < 8 && inside; d++) {
+                int a = extreme[d], b = extreme[(d + 1) % 8];
+                if (a != b && cross(x, y, a, b, i) <= 0)
+                    inside = false;
+            }
+            if (!inside)
+                kept[size++] = i;
+        }
+
+        // sort the kept points in x-major order
+        double[] kx = new double[size];
+        double[] ky = new double[size];
+        for (int i = 0; i < size; i++) {
+            kx[i] = x[kept[i]];
+            ky[i] = y[kept[i]];
+        }
+        int[] sorted = IndexSort.sort(size, kx, ky);
+        for (int i = 0; i < size; i++)
+            sorted[i] = kept[sorted[i]];
+        return chain(x, y, sorted, sorted, size);
+    }
+
+    /**
+     * Finds the hull of the candidates with a monotone chain. Both
+     * bottom and top hold size candidates in x-major order; the lower
+     * chain is built from bottom and the upper one from top. For the
+     * exact hull of a set of points, both are the whole sorted set.
+     *
+     * @return the indices of the vertices in order around the hull,
+     *         ending with the first one again
+     */
+    static int[] chain(double[] x, double[] y, int[] bottom, int[] top, int size) {
+        // a monotone chain over the bottom, then back over the top
+        int[] hull = new int[2 * size + 1];
+        int h = 0;
+        for (int i = 0; i < size; i++)
+            h = push(x, y, hull, h, 0, bottom[i]);
+        int lower = h;
+        for (int i = size - 1; i >= 0; i--)
+            h = push(x, y, hull, h, lower - 1, top[i]);
+
+        // close the loop if the top did not end where the bottom started
+        if (x[hull[h - 1]] != x[hull[0]] || y[hull[h - 1]] != y[hull[0]])
+            hull[h++] = hull[0];
+        return Arrays.copyOf(hull, h);
+    }
+
+    // adds p to the chain in hull[0..h), dropping the vertices after
+    // hull[floor] that would not make a counter-clockwise turn
+    private static int push(double[] x, double[] y, int[] hull, int h, int floor, int p) {
+        while (h > floor + 1 && cross(x, y, hull[h - 2], hull[h - 1], p) <= 0)
+            h--;
+        if (h == 0 || x[hull[h - 1]] != x[p] || y[hull[h - 1]] != y[p])
+            hull[h++] = p;
+        return h;
+    }
+
+    private static double cross(double[] x, double[] y, int a, int b, int c) {
+        return (x[b] - x[a]) * (y[c] - y[a]) - (y[b] - y[a]) * (x[c] - x[a]);
+    }
+
+}
@@ -0,0 +1,218 @@
+package point.convexhull;
+
+import point.Point;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The convex hull of one shard of a set of points, which can be sent
+ * to another process and merged with the hulls of the other shards.
+ * The hull of the union of the shards is the hull of the union of
+ * their hulls, so only hull vertices ever need to leave a shard.
+ *
+ * The vertices are kept in x-major order. Two partial hulls are merged
+ * by merging their vertices like in a merge sort and running one
+ * monotone chain over them, in O(a + b) time for hulls of a and b
+ * vertices. A partial hull is written as the number of vertices
+ * followed by their coordinates, 4 + 16h bytes in all.
+ */
+public final class PartialHull {
+
+    /**
+     * The hull of no points.
+     */
+    public static final PartialHull EMPTY = new PartialHull(new double[0], new double[0]);
+
+    // the coordinates of the vertices in x-major order
+    private final double[] x;
+    private final double[] y;
+
+    private PartialHull(double[] x, double[] y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Returns the hull of the given points.
+     *
+     * @param points the list of points
+     * @return the partial hull
+     */
+    public static PartialHull of(List<Point> points) {
+        return of(points.stream().mapToDouble(Point::getX).toArray(),
+                points.stream().mapToDouble(Point::getY).toArray());
+    }
+
+    /**
+     * Returns the hull of the points with the given coordinates.
+     *
+     * @param x the x-coordinates of the points
+     * @param y the y-coordinates of the points
+     * @return the partial hull
+     */
+    public static PartialHull of(double[] x, double[] y) {
+        if (x.length != y.length)
+            throw new IllegalArgumentException("x.length != y.length");
+        if (x.length == 0)
+            return EMPTY;
+        return fromLoop(x, y, MonotoneChain.hull(x, y));
+    }
+
+    /**
+     * Merges the given hulls into the hull of all of their points. The
+     * hulls are merged in pairs, so this takes O(H log k) time for k
+     * hulls of H vertices in total.
+     *
+     * @param hulls the list of hulls
+     * @return the merged hull
+     */
+    public static PartialHull merge(List<PartialHull> hulls) {
+        List<PartialHull> round = new ArrayList<>(hulls);
+        while (round.size() > 1) {
+            List<PartialHull> next = new ArrayList<>();
+            for (int i = 0; i + 1 < round.size(); i += 2)
+                next.add(merge(round.get(i), round.get(i + 1)));
+            if (round.size() % 2 == 1)
+                next.add(round.get(round.size() - 1));
+            round = next;
+        }
+        return round.isEmpty() ? EMPTY : round.get(0);
+    }
+
+    /**
+     * Merges two hulls into the hull of all of their points.
+     *
+     * @param a a hull
+     * @param b another hull
+     * @return the merged hull
+     */
+    public static PartialHull merge(PartialHull a, PartialHull b) {
+        if (a.size() == 0)
+            return b;
+        if (b.size() == 0)
+            return a;
+
+        // merge the vertices, dropping the ones in both hulls
+        double[] x = new double[a.size() + b.size()];
+        double[] y = new double[x.length];
+        int i = 0, j = 0, m = 0;
+        while (i < a.size() || j < b.size()) {
+            int c = (i == a.size()) ? 1 : (j == b.size()) ? -1 : compare(a.x[i], a.y[i], b.x[j], b.y[j]);
+            if (c <= 0) {
+                x[m] = a.x[i];
+                y[m++] = a.y[i++];
+                if (c == 0)
+                    j++;
+            } else {
+                x[m] = b.x[j];
+                y[m++] = b.y[j++];
+            }
+        }
+
+        int[] sorted = new int[m];
+        for (int k = 0; k < m; k++)
+            sorted[k] = k;
+        return fromLoop(x, y, MonotoneChain.chain(x, y, sorted, sorted, m));
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return number of vertices
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * Returns the vertices in the same form as
+     * ConvexHullPane.getConvexHull(): in order around the hull, ending
+     * with the first one again.
+     *
+     * @return a list of new points at the vertices
+     */
+    public List<Point> toHull() {
+        List<Point> hull = new ArrayList<>();
+        if (size() > 0) {
+            int[] sorted = new int[size()];
+            for (int i = 0; i < sorted.length; i++)
+                sorted[i] = i;
+            for (int i : MonotoneChain.chain(x, y, sorted, sorted, sorted.length))
+                hull.add(new Point(x[i], y[i]));
+        }
+        return hull;
+    }
+
+    /**
+     * Writes this hull to the given output.
+     *
+     * @param out the output
+     * @throws IOException if the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size());
+        for (int i = 0; i < size(); i++) {
+            out.writeDouble(x[i]);
+            out.writeDouble(y[i]);
+        }
+    }
+
+    /**
+     * Reads a hull written by writeTo().
+     *
+     * @param in the input
+     * @return the hull
+     * @throws IOException if the input cannot be read
+     */
+    public static PartialHull readFrom(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0)
+            throw new IOException("negative size: " + size);
+
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = in.readDouble();
+            y[i] = in.readDouble();
+        }
+        return new PartialHull(x, y);
+    }
+
+    /**
+     * Puts the vertices of a loop from MonotoneChain back in x-major
+     * order. The loop goes up from the first point in x-major order to
+     * the last one along the bottom, then back along the top, so the
+     * two halves only need to be merged.
+     */
+    private static PartialHull fromLoop(double[] x, double[] y, int[] loop) {
+        int n = loop.length;
+        if (n > 1 && loop[n - 1] == loop[0])
+            n--;
+
+        // the last point in x-major order ends the bottom
+        int last = 0;
+        for (int i = 1; i < n; i++)
+            if (compare(x[loop[i]], y[loop[i]], x[loop[last]], y[loop[last]]) > 0)
+                last = i;
+
+        double[] hx = new double[n];
+        double[] hy = new double[n];
+        int i = 0, j = n - 1, m = 0;
+        while (i <= last || j > last) {
+            boolean bottom = j <= last ||
+                    (i <= last && compare(x[loop[i]], y[loop[i]], x[loop[j]], y[loop[j]]) < 0);
+            int p = bottom ? loop[i++] : loop[j--];
+            hx[m] = x[p];
+            hy[m++] = y[p];
+        }
+        return new PartialHull(hx, hy);
+    }
+
+    private static int compare(double x1, double y1, double x2, double y2) {
+        return (x1 != x2) ? Double.compare(x1, x2) : Double.compare(y1, y2);
+    }
+}
@@ -0,0 +1,230 @@
+package point.convexhull;
+
+import point.Point;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class of queries on a convex hull that are answered with the
+ * rotating calipers method: the diameter (the farthest pair of points),
+ * the width (the smallest distance between two parallel lines enclosing
+ * the hull) and the bounding rectangle of the smallest area.
+ *
+ * Each query walks the hull once with a few pointers that only move
+ * forward, so it takes O(h) time for a hull of h vertices instead of
+ * the O(n^2) of checking every pair of points. The diameter and the
+ * width start from vertices of the hull itself, so they can be bound
+ * to the circles of those points. The hull is given as
+ * its vertices in order around it, in either direction, as returned by
+ * ConvexHullPane.getConvexHull(); a closing vertex repeating the first
+ * one is allowed.
+ */
+public final class RotatingCalipers {
+
+    // the vertices of the hull and their coordinates, counter-clockwise
+    // without the closing vertex
+    private final Point[] v;
+    private final double[] x;
+    private final double[] y;
+    private final int h;
+
+    /**
+     * Constructs the calipers for the given hull vertices.
+     *
+     * @param hull the vertices of a convex hull in order
+     */
+    public RotatingCalipers(List<Point> hull) {
+        if (hull.isEmpty())
+            throw new IllegalArgumentException("empty hull");
+
+        int n = hull.size();
+        if (n > 1 && hull.get(0).equals(hull.get(n - 1)))
+            n--;
+
+        v = hull.subList(0, n).toArray(new Point[0]);
+        x = new double[n];
+        y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = v[i].getX();
+            y[i] = v[i].getY();
+        }
+        h = n;
+
+        // the pointers below assume a counter-clockwise order
+        double area = 0;
+        for (int i = 0; i < h; i++)
+            area += x[i] * y[next(i)] - x[next(i)] * y[i];
+        if (area < 0) {
+            reverse(v);
+            reverse(x);
+            reverse(y);
+        }
+    }
+
+    /**
+     * Returns the farthest pair of vertices of the hull.
+     *
+     * @return a list of the two points of the diameter
+     */
+    public List<Point> diameter() {
+        if (h < 3)
+            return Arrays.asList(vertex(0), vertex(h - 1));
+
+        int a = 0, b = 1;
+        double best = -1;
+        int j = 1;
+        for (int i = 0; i < h; i++) {
+            int i1 = next(i);
+
+            // move j to the vertex farthest from the edge (i, i1)
+            while (cross(i, i1, next(j)) > cross(i, i1, j))
+                j = next(j);
+
+            // both ends of the edge are antipodal to j
+            double d = distanceSquared(i, j);
+            if (d > best) {
+                best = d;
+                a = i;
+                b = j;
+            }
+            d = distanceSquared(i1, j);
+            if (d > best) {
+                best = d;
+                a = i1;
+                b = j;
+            }
+        }
+
+        return Arrays.asList(vertex(a), vertex(b));
+    }
+
+    /**
+     * Returns the width of the hull as a segment from a vertex to the
+     * closest point on the line through the opposite edge. The length
+     * of the segment is the width, which is 0 if the hull is flat.
+     *
+     * @return a list of the vertex and its foot on the opposite edge
+     */
+    public List<Point> width() {
+        if (h < 3)
+            return Arrays.asList(vertex(0), vertex(0));
+
+        int edge = 0, apex = 0;
+        double best = Double.POSITIVE_INFINITY;
+        int j = 1;
+        for (int i = 0; i < h; i++) {
+            int i1 = next(i);
+            while (cross(i, i1, next(j)) > cross(i, i1, j))
+                j = next(j);
+
+            // the height of j over the edge
+            double d = cross(i, i1, j) / Math.sqrt(distanceSquared(i, i1));
+            if (d < best) {
+                best = d;
+                edge = i;
+                apex = j;
+            }
+        }
+
+        int e1 = next(edge);
+        double ex = x[e1] - x[edge], ey = y[e1] - y[edge];
+        double t = ((x[apex] - x[edge]) * ex + (y[apex] - y[edge]) * ey) / (ex * ex + ey * ey);
+        return Arrays.asList(vertex(apex), new Point(x[edge] + t * ex, y[edge] + t * ey));
+    }
+
+    /**
+     * Returns the bounding rectangle of the smallest area. One side of
+     * this rectangle always lies on an edge of the hull, so only the
+     * h rectangles flush with an edge are checked; the two extremes
+     * along the edge and the one farthest from it are tracked by three
+     * calipers that rotate together with the edge.
+     *
+     * @return a list of the four corners of the rectangle in order
+     */
+    public List<Point> minAreaRectangle() {
+        if (h < 3) {
+            Point a = vertex(0), b = vertex(h - 1);
+            return Arrays.asList(a, b, b, a);
+        }
+
+        double bestArea = Double.POSITIVE_INFINITY;
+        Point[] best = null;
+
+        // j is the farthest from the edge, k the farthest forward
+        // along it and m the farthest backward
+        int j = 1, k = 1, m = 0;
+        for (int i = 0; i < h; i++) {
+            int i1 = next(i);
+            double len = Math.sqrt(distanceSquared(i, i1));
+            double ux = (x[i1] - x[i]) / len, uy = (y[i1] - y[i]) / len;
+
+            while (cross(i, i1, next(j)) > cross(i, i1, j))
+                j = next(j);
+            while (dot(ux, uy, next(k)) > dot(ux, uy, k))
+                k = next(k);
+            if (i == 0)
+                m = j;
+            while (dot(ux, uy, next(m)) < dot(ux, uy, m))
+                m = next(m);
+
+            double front = dot(ux, uy, k) - dot(ux, uy, i);
+            double back = dot(ux, uy, m) - dot(ux, uy, i);
+            double height = cross(i, i1, j) / len;
+            double area = (front - back) * height;
+            if (area < bestArea) {
+                bestArea = area;
+
+                // the normal (-uy, ux) points into the hull
+                best = new Point[] {
+                        new Point(x[i] + back * ux, y[i] + back * uy),
+                        new Point(x[i] + front * ux, y[i] + front * uy),
+                        new Point(x[i] + front * ux - height * uy, y[i] + front * uy + height * ux),
+                        new Point(x[i] + back * ux - height * uy, y[i] + back * uy + height * ux)
+                };
+            }
+        }
+
+        return Arrays.asList(best);
+    }
+
+    ////////////////////
+    // helper methods //
+    ////////////////////
+
+    private int next(int i) {
+        return (i + 1 == h) ? 0 : i + 1;
+    }
+
+    private Point vertex(int i) {
+        return v[i];
+    }
+
+    // twice the signed area of the triangle (a, b, c); >0 if c is to the left of a -> b
+    private double cross(int a, int b, int c) {
+        return (x[b] - x[a]) * (y[c] - y[a]) - (y[b] - y[a]) * (x[c] - x[a]);
+    }
+
+    private double dot(double ux, double uy, int i) {
+        return x[i] * ux + y[i] * uy;
+    }
+
+    private double distanceSquared(int a, int b) {
+        double dx = x[a] - x[b];
+        double dy = y[a] - y[b];
+        return dx * dx + dy * dy;
+    }
+
+    private static void reverse(double[] a) {
+        for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+            double t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    private static void reverse(Point[] a) {
+        Collections.reverse(Arrays.asList(a));
+    }
+}
@@ -0,0 +1,144 @@
+package point.convexhull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A stand-in for finding the convex hull of points that are spread
+ * over several machines. Every shard of points is owned by a separate
+ * worker JVM, which finds the hull of its shard and writes it to its
+ * standard output as a PartialHull; this program plays the coordinator,
+ * merges the partial hulls and compares the result, the bytes that
+ * crossed the process boundaries and the time taken with finding the
+ * hull of all points in one process.
+ *
+ * Usage: java point.convexhull.ShardedHull [shards] [points per shard]
+ *
+ * The workers generate their shards from a seed, standing in for data
+ * that already lives on them. Only the hull work is compared: each
+ * worker reports the time it takes to find the hull of its shard, and
+ * the sharded time is that of the slowest worker, since they run at
+ * once, plus the time the coordinator takes to merge; the single
+ * process is timed after its points are generated. Each is the best of
+ * a few runs, so neither includes loading classes or compiling the
+ * code. The time from starting the workers to the merged hull, with
+ * the start of the JVMs, is printed on its own.
+ */
+public class ShardedHull {
+
+    // the runs each hull is timed over, taking the best
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && args[0].equals("--worker")) {
+            work(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+
+        int shards = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int size = (args.length > 1) ? Integer.parseInt(args[1]) : 1_000_000;
+
+        ///////////////////// sharded over worker processes /////////////////////
+
+        long start = System.nanoTime();
+        List<Process> workers = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            workers.add(new ProcessBuilder(
+                    System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                    "-cp", System.getProperty("java.class.path"),
+                    ShardedHull.class.getName(), "--worker", String.valueOf(shard), String.valueOf(size))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start());
+        }
+
+        long payload = 0;
+        long slowest = 0;
+        List<byte[]> received = new ArrayList<>();
+        for (Process worker : workers) {
+            byte[] bytes;
+            try (InputStream in = worker.getInputStream()) {
+                bytes = in.readAllBytes();
+            }
+            if (worker.waitFor() != 0)
+                throw new IllegalStateException("worker exited with " + worker.exitValue());
+
+            // the time of the worker comes first, and is not part of the payload
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+            slowest = Math.max(slowest, data.readLong());
+            received.add(data.readAllBytes());
+            payload += bytes.length - Long.BYTES;
+        }
+
+        // reading and merging the partial hulls is the work of the coordinator
+        PartialHull merged = null;
+        long merging = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long mergeStart = System.nanoTime();
+            List<PartialHull> partials = new ArrayList<>();
+            for (byte[] bytes : received)
+                partials.add(PartialHull.readFrom(new DataInputStream(new ByteArrayInputStream(bytes))));
+            merged = PartialHull.merge(partials);
+            merging = Math.min(merging, System.nanoTime() - mergeStart);
+        }
+        long endToEnd = System.nanoTime() - start;
+        long sharded = slowest + merging;
+
+        ///////////////////////// all in one process /////////////////////////
+
+        double[] x = new double[shards * size];
+        double[] y = new double[shards * size];
+        for (int shard = 0; shard < shards; shard++)
+            generate(shard, size, x, y, shard * size);
+
+        PartialHull single = null;
+        long local = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long hullStart = System.nanoTime();
+            single = PartialHull.of(x, y);
+            local = Math.min(local, System.nanoTime() - hullStart);
+        }
+
+        System.out.printf("%d shards of %d points%n", shards, size);
+        System.out.printf("hull vertices:    %d (single process: %d)%n", merged.size(), single.size());
+        System.out.printf("payload:          %d bytes (raw points: %d bytes)%n", payload, 16L * shards * size);
+        System.out.printf("sharded:          %.1f ms (slowest worker %.1f ms, merge %.1f ms)%n",
+                sharded / 1e6, slowest / 1e6, merging / 1e6);
+        System.out.printf("single process:   %.1f ms%n", local / 1e6);
+        System.out.printf("speedup:          %.2fx%n", (double) local / sharded);
+        System.out.printf("end to end:       %.1f ms, with starting %d worker JVMs%n", endToEnd / 1e6, shards);
+    }
+
+    // finds the hull of a shard and writes the best time it took and
+    // the hull to the standard output
+    private static void work(int shard, int size) throws IOException {
+        double[] x = new double[size];
+        double[] y = new double[size];
+        generate(shard, size, x, y, 0);
+
+        PartialHull hull = null;
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            hull = PartialHull.of(x, y);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        out.writeLong(best);
+        hull.writeTo(out);
+        out.flush();
+    }
+
+    // fills x and y from offset with the points of a shard, a cloud of
+    // points around a center that depends on the shard
+    private static void generate(int shard, int size, double[] x, double[] y, int offset) {
+        Random random = new Random(shard);
+        double cx = 1000 * Math.cos(shard), cy = 1000 * Math.sin(shard);
+        for (int i = offset; i < offset + size; i++) {
+            x[i] = cx + 300 * random.nextGaussian();
+            y[i] = cy + 300 * random.nextGaussian();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package point.delaunay;
+
+import javafx.application.Application;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.stage.Stage;
+
+/**
+ * This program provides a UI for plotting points and drawing their
+ * Delaunay triangulation, together with the minimum spanning tree,
+ * the nearest neighbours and the closest pair derived from it.
+ */
+public class Delaunay extends Application {
+
+    @Override
+    public void start(Stage primaryStage) {
+        DelaunayPane pane = new DelaunayPane();
+
+        ComboBox<DelaunayPane.Mode> cbMode = new ComboBox<>();
+        cbMode.getItems().addAll(DelaunayPane.Mode.values());
+        cbMode.setValue(pane.getMode());
+
+        Button btSolve = new Button("Solve");
+        Button btReset = new Button("Reset");
+
+        // add a point where the primary button is clicked; the middle
+        // button is left to panning the pane
+        pane.setOnMouseClicked(mouse -> {
+            if (mouse.getButton() == MouseButton.PRIMARY)
+                pane.add(pane.toWorldX(mouse.getX()), pane.toWorldY(mouse.getY()));
+        });
+
+        cbMode.setOnAction(event -> pane.setMode(cbMode.getValue()));
+
+        btSolve.setOnAction(event -> pane.solve());
+
+        btReset.setOnAction(event -> pane.clear());
+
+        HBox buttons = new HBox(10);
+        buttons.setPadding(new Insets(10));
+        buttons.setAlignment(Pos.CENTER);
+        buttons.getChildren().addAll(cbMode, btSolve, btReset);
+
+        BorderPane root = new BorderPane();
+        root.setPadding(new Insets(10));
+        root.setCenter(pane);
+        root.setBottom(buttons);
+
+        Scene scene = new Scene(root);
+
+        primaryStage.setTitle("Delaunay Triangulation");
+        primaryStage.setScene(scene);
+        primaryStage.show();
+    }
+}
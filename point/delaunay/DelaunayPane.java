@@ -0,0 +1,126 @@
+package point.delaunay;
+
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Line;
+import point.PlotPane;
+import point.Point;
+
+/**
+ * This pane extends PlotPane from the parent package. It carries on
+ * the original functions of a plotting pane with additional methods
+ * that draw the Delaunay triangulation of the plotted points, or one
+ * of the graphs derived from it.
+ *
+ * @see PlotPane
+ * @see DelaunayTriangulation
+ */
+public class DelaunayPane extends PlotPane {
+
+    /**
+     * The graphs that this pane can draw.
+     */
+    public enum Mode {
+        TRIANGULATION("Triangulation"),
+        SPANNING_TREE("Spanning tree"),
+        NEAREST_NEIGHBORS("Nearest neighbours"),
+        CLOSEST_PAIR("Closest pair");
+
+        private final String name;
+
+        Mode(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public DelaunayPane() {
+        super();
+    }
+
+    public DelaunayPane(double width, double height) {
+        super(width, height);
+    }
+
+    /**
+     * Stores the last triangulation and provides a getter method
+     * for it.
+     */
+    private DelaunayTriangulation triangulation;
+
+    public DelaunayTriangulation getTriangulation() {
+        return triangulation;
+    }
+
+    /**
+     * The graph drawn when solved. A getter and a setter is provided
+     * as well.
+     */
+    private Mode mode = Mode.TRIANGULATION;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+
+        // redraw if there is a solution
+        if (triangulation != null)
+            solve();
+    }
+
+    /**
+     * Call clear() in superclass and reset the triangulation to null.
+     *
+     * @see PlotPane#clear()
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        triangulation = null;
+    }
+
+    /**
+     * Triangulate the points and draw the graph of the current mode,
+     * replacing the previous drawing.
+     */
+    public void solve() {
+        getPlotChildren().clear();
+        triangulation = new DelaunayTriangulation(points);
+        if (points.size() < 2)
+            return;
+
+        switch (mode) {
+            case TRIANGULATION:
+                for (int e = 0; e < triangulation.numOfEdges(); e++)
+                    draw(triangulation.edgeFrom(e), triangulation.edgeTo(e));
+                break;
+            case SPANNING_TREE:
+                for (int e : triangulation.minimumSpanningTree())
+                    draw(triangulation.edgeFrom(e), triangulation.edgeTo(e));
+                break;
+            case NEAREST_NEIGHBORS:
+                int[] nearest = triangulation.nearestNeighbors();
+                for (int i = 0; i < nearest.length; i++)
+                    draw(i, nearest[i]);
+                break;
+            case CLOSEST_PAIR:
+                int[] pair = triangulation.closestPair();
+                draw(pair[0], pair[1]);
+                break;
+        }
+    }
+
+    // helper method for drawing a line between two points
+    private void draw(int i, int j) {
+        Point p1 = points.get(i);
+        Point p2 = points.get(j);
+        Line line = new Line(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+        line.setStroke(Color.DARKSLATEGRAY);
+        getPlotChildren().add(line);
+    }
+}
@@ -0,0 +1,432 @@
+package point.delaunay;
+
+import point.IndexSort;
+import point.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class that computes the Delaunay triangulation of a set of points
+ * on a plane, using the divide-and-conquer algorithm of Guibas and
+ * Stolfi in O(n log n) time. It does not depend on JavaFX, so it can
+ * be used without a UI.
+ *
+ * The closest pair, the nearest neighbour of every point and the
+ * Euclidean minimum spanning tree all use only edges of the Delaunay
+ * triangulation, which has at most 3n edges. Once the triangulation is
+ * built, they are found by looking at those edges alone.
+ *
+ * Points are referred to by their index in the input. Points with the
+ * same coordinates are triangulated once, and every other copy is
+ * joined to the first one by an edge of length 0.
+ */
+public final class DelaunayTriangulation {
+
+    // the coordinates of the input points
+    private final double[] x;
+    private final double[] y;
+    private final int n;
+
+    /**
+     * The quad-edge structure of the triangulation. An edge e belongs
+     * to the quad-edge e / 4, which holds the edge, its dual, its
+     * reverse and the reverse of its dual, so rot() and sym() are bit
+     * operations. onext[e] is the next edge counter-clockwise around
+     * the origin of e, and org[e] is that origin for primal edges.
+     */
+    private int[] onext;
+    private int[] org;
+    private boolean[] deleted;
+    private int numEdges;
+
+    // the endpoints of every edge of the triangulation
+    private int[] from;
+    private int[] to;
+
+    /**
+     * Constructs the Delaunay triangulation of the given points.
+     *
+     * @param points the list of points
+     */
+    public DelaunayTriangulation(List<Point> points) {
+        this(xs(points), ys(points));
+    }
+
+    /**
+     * Constructs the Delaunay triangulation of the points with the
+     * given coordinates.
+     *
+     * @param x the x-coordinates of the points
+     * @param y the y-coordinates of the points
+     */
+    public DelaunayTriangulation(double[] x, double[] y) {
+        if (x.length != y.length)
+            throw new IllegalArgumentException("x.length != y.length");
+
+        this.x = x;
+        this.y = y;
+        this.n = x.length;
+
+        onext = new int[16];
+        org = new int[16];
+        deleted = new boolean[4];
+
+        // sort the points in x-major order and set the copies aside
+        int[] order = IndexSort.sort(n, x, y);
+
+        int[] sorted = new int[n];
+        int[] copies = new int[2 * n];
+        int distinct = 0, numCopies = 0;
+        for (int i = 0; i < n; i++) {
+            int p = order[i];
+            if (distinct > 0 && x[sorted[distinct - 1]] == x[p] && y[sorted[distinct - 1]] == y[p]) {
+                copies[numCopies++] = sorted[distinct - 1];
+                copies[numCopies++] = p;
+            } else
+                sorted[distinct++] = p;
+        }
+
+        if (distinct > 1)
+            triangulate(sorted, 0, distinct);
+
+        // collect the edges that are left
+        int count = numCopies / 2;
+        for (int q = 0; q < numEdges; q += 4)
+            if (!deleted[q / 4])
+                count++;
+
+        from = new int[count];
+        to = new int[count];
+        int e = 0;
+        for (int q = 0; q < numEdges; q += 4) {
+            if (!deleted[q / 4]) {
+                from[e] = org[q];
+                to[e++] = org[sym(q)];
+            }
+        }
+        for (int i = 0; i < numCopies; i += 2) {
+            from[e] = copies[i];
+            to[e++] = copies[i + 1];
+        }
+
+        // the quad-edges are not needed anymore
+        onext = org = null;
+        deleted = null;
+    }
+
+    /**
+     * Returns the number of points.
+     *
+     * @return number of points
+     */
+    public int numOfPoints() {
+        return n;
+    }
+
+    /**
+     * Returns the number of edges of the triangulation.
+     *
+     * @return number of edges
+     */
+    public int numOfEdges() {
+        return from.length;
+    }
+
+    /**
+     * Returns the index of the first or the second point of an edge.
+     *
+     * @param edge the index of the edge
+     * @return the index of the point
+     */
+    public int edgeFrom(int edge) {
+        return from[edge];
+    }
+
+    public int edgeTo(int edge) {
+        return to[edge];
+    }
+
+    /**
+     * Returns the nearest neighbour of every point. The nearest
+     * neighbour of a point is always joined to it by a Delaunay edge,
+     * so this takes O(n) time.
+     *
+     * @return the index of the nearest neighbour of each point, or -1
+     *         if there is only one point
+     */
+    public int[] nearestNeighbors() {
+        int[] nearest = new int[n];
+        double[] best = new double[n];
+        Arrays.fill(nearest, -1);
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+
+        for (int e = 0; e < from.length; e++) {
+            int a = from[e], b = to[e];
+            double d = distanceSquared(a, b);
+            if (d < best[a]) {
+                best[a] = d;
+                nearest[a] = b;
+            }
+            if (d < best[b]) {
+                best[b] = d;
+                nearest[b] = a;
+            }
+        }
+
+        return nearest;
+    }
+
+    /**
+     * Returns the closest pair of points, which is the shortest edge
+     * of the triangulation.
+     *
+     * @return the indices of the two points
+     */
+    public int[] closestPair() {
+        if (from.length == 0)
+            throw new IllegalArgumentException("size < 2");
+
+        int closest = 0;
+        double best = Double.POSITIVE_INFINITY;
+        for (int e = 0; e < from.length; e++) {
+            double d = distanceSquared(from[e], to[e]);
+            if (d < best) {
+                best = d;
+                closest = e;
+            }
+        }
+
+        return new int[] {from[closest], to[closest]};
+    }
+
+    /**
+     * Returns the Euclidean minimum spanning tree of the points, found
+     * by Kruskal's algorithm on the edges of the triangulation.
+     *
+     * @return the indices of the edges in the tree, shortest first
+     */
+    public int[] minimumSpanningTree() {
+        double[] length = new double[from.length];
+        for (int e = 0; e < from.length; e++)
+            length[e] = distanceSquared(from[e], to[e]);
+        int[] byLength = IndexSort.sort(from.length, length, length);
+
+        // a union-find forest of the points joined so far
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++)
+            parent[i] = i;
+
+        int[] tree = new int[Math.max(n - 1, 0)];
+        int size = 0;
+        for (int e : byLength) {
+            int a = find(parent, from[e]);
+            int b = find(parent, to[e]);
+            if (a != b) {
+                parent[a] = b;
+                tree[size++] = e;
+                if (size == tree.length)
+                    break;
+            }
+        }
+
+        return Arrays.copyOf(tree, size);
+    }
+
+    // finds the root of i, halving the path on the way
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i)
+            i = parent[i] = parent[parent[i]];
+        return i;
+    }
+
+    /////////////////////////////////////
+    // divide-and-conquer triangulation //
+    /////////////////////////////////////
+
+    /**
+     * Triangulates the points s[lo..hi) and returns the counter-clockwise
+     * convex hull edge out of the leftmost point and the clockwise convex
+     * hull edge out of the rightmost point.
+     */
+    private int[] triangulate(int[] s, int lo, int hi) {
+        if (hi - lo == 2) {
+            int a = makeEdge(s[lo], s[lo + 1]);
+            return new int[] {a, sym(a)};
+        } else if (hi - lo == 3) {
+            int p1 = s[lo], p2 = s[lo + 1], p3 = s[lo + 2];
+            int a = makeEdge(p1, p2);
+            int b = makeEdge(p2, p3);
+            splice(sym(a), b);
+
+            // close the triangle unless the three points are on a line
+            if (ccw(p1, p2, p3)) {
+                connect(b, a);
+                return new int[] {a, sym(b)};
+            } else if (ccw(p1, p3, p2)) {
+                int c = connect(b, a);
+                return new int[] {sym(c), c};
+            }
+            return new int[] {a, sym(b)};
+        }
+
+        int mid = (lo + hi) / 2;
+        int[] left = triangulate(s, lo, mid);
+        int[] right = triangulate(s, mid, hi);
+        int ldo = left[0], ldi = left[1];
+        int rdi = right[0], rdo = right[1];
+
+        // find the lower common tangent of the two halves
+        while (true) {
+            if (leftOf(org[rdi], ldi))
+                ldi = lnext(ldi);
+            else if (rightOf(org[ldi], rdi))
+                rdi = onext[sym(rdi)];
+            else
+                break;
+        }
+
+        // zip the halves together from the bottom up
+        int basel = connect(sym(rdi), ldi);
+        if (org[ldi] == org[ldo])
+            ldo = sym(basel);
+        if (org[rdi] == org[rdo])
+            rdo = basel;
+
+        while (true) {
+            // drop the left edges that are not Delaunay with the new base
+            int lcand = onext[sym(basel)];
+            if (valid(lcand, basel)) {
+                while (inCircle(dest(basel), org[basel], dest(lcand), dest(onext[lcand]))) {
+                    int t = onext[lcand];
+                    deleteEdge(lcand);
+                    lcand = t;
+                }
+            }
+
+            // and the same on the right
+            int rcand = oprev(basel);
+            if (valid(rcand, basel)) {
+                while (inCircle(dest(basel), org[basel], dest(rcand), dest(oprev(rcand)))) {
+                    int t = oprev(rcand);
+                    deleteEdge(rcand);
+                    rcand = t;
+                }
+            }
+
+            boolean lvalid = valid(lcand, basel);
+            boolean rvalid = valid(rcand, basel);
+            if (!lvalid && !rvalid)
+                break; // basel is the upper common tangent
+
+            // connect to the candidate whose circle is empty
+            if (!lvalid || (rvalid && inCircle(dest(lcand), org[lcand], org[rcand], dest(rcand))))
+                basel = connect(rcand, sym(basel));
+            else
+                basel = connect(sym(basel), sym(lcand));
+        }
+
+        return new int[] {ldo, rdo};
+    }
+
+    ////////////////////////
+    // quad-edge operations //
+    ////////////////////////
+
+    private static int rot(int e)       { return (e & ~3) | ((e + 1) & 3); }
+    private static int invRot(int e)    { return (e & ~3) | ((e + 3) & 3); }
+    private static int sym(int e)       { return e ^ 2; }
+    private int dest(int e)             { return org[sym(e)]; }
+    private int lnext(int e)            { return rot(onext[invRot(e)]); }
+    private int oprev(int e)            { return rot(onext[rot(e)]); }
+
+    private int makeEdge(int a, int b) {
+        if (numEdges == onext.length) {
+            onext = Arrays.copyOf(onext, 2 * numEdges);
+            org = Arrays.copyOf(org, 2 * numEdges);
+            deleted = Arrays.copyOf(deleted, numEdges / 2);
+        }
+
+        int q = numEdges;
+        numEdges += 4;
+        onext[q] = q;
+        onext[q + 1] = q + 3;
+        onext[q + 2] = q + 2;
+        onext[q + 3] = q + 1;
+        org[q] = a;
+        org[q + 2] = b;
+        return q;
+    }
+
+    private void splice(int a, int b) {
+        int alpha = rot(onext[a]);
+        int beta = rot(onext[b]);
+
+        int t = onext[a];
+        onext[a] = onext[b];
+        onext[b] = t;
+        t = onext[alpha];
+        onext[alpha] = onext[beta];
+        onext[beta] = t;
+    }
+
+    // adds an edge from the destination of a to the origin of b
+    private int connect(int a, int b) {
+        int e = makeEdge(dest(a), org[b]);
+        splice(e, lnext(a));
+        splice(sym(e), b);
+        return e;
+    }
+
+    private void deleteEdge(int e) {
+        splice(e, oprev(e));
+        splice(sym(e), oprev(sym(e)));
+        deleted[e / 4] = true;
+    }
+
+    //////////////////////
+    // geometric tests //
+    //////////////////////
+
+    // checks if a, b and c are in counter-clockwise order
+    private boolean ccw(int a, int b, int c) {
+        return (x[b] - x[a]) * (y[c] - y[a]) - (y[b] - y[a]) * (x[c] - x[a]) > 0;
+    }
+
+    private boolean rightOf(int p, int e) {
+        return ccw(p, dest(e), org[e]);
+    }
+
+    private boolean leftOf(int p, int e) {
+        return ccw(p, org[e], dest(e));
+    }
+
+    // checks if the destination of e is above the base edge
+    private boolean valid(int e, int basel) {
+        return rightOf(dest(e), basel);
+    }
+
+    // checks if d is inside the circle through a, b and c
+    private boolean inCircle(int a, int b, int c, int d) {
+        double adx = x[a] - x[d], ady = y[a] - y[d];
+        double bdx = x[b] - x[d], bdy = y[b] - y[d];
+        double cdx = x[c] - x[d], cdy = y[c] - y[d];
+        return (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy) +
+                (bdx * bdx + bdy * bdy) * (cdx * ady - adx * cdy) +
+                (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady) > 0;
+    }
+
+    private double distanceSquared(int a, int b) {
+        double dx = x[a] - x[b];
+        double dy = y[a] - y[b];
+        return dx * dx + dy * dy;
+    }
+
+    private static double[] xs(List<Point> points) {
+        return points.stream().mapToDouble(Point::getX).toArray();
+    }
+
+    private static double[] ys(List<Point> points) {
+        return points.stream().mapToDouble(Point::getY).toArray();
+    }
+}
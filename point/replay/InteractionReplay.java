@@ -0,0 +1,557 @@
+package point.replay;
+
+import javafx.scene.shape.Circle;
+import point.Metric;
+import point.PlotPane;
+import point.closestpair.ClosestPairPane;
+import point.convexhull.ConvexHullPane;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A harness that plays scripts of mouse actions against ClosestPairPane
+ * and ConvexHullPane without a screen, and reports the time of every
+ * frame, the latency of every solve and the memory allocated by every
+ * action, in a report that can be compared with the report of another
+ * version to catch the regressions that only show up as the user works
+ * with the panes.
+ *
+ * Usage: java point.replay.InteractionReplay script [options]
+ *        java point.replay.InteractionReplay --generate=closest|hull [options]
+ *
+ * Options:
+ *   --points=n      the points of a generated script (2000)
+ *   --frames=n      the frames of a generated script (600)
+ *   --seed=n        the seed of a generated script (1)
+ *   --save=path     writes the generated script, to play it again later
+ *   --warmup=n      plays the script n times before measuring it (1)
+ *   --out=path      writes the report
+ *   --compare=path  compares the report with an earlier one of the same
+ *                   pane, points and actions, and exits with 1 if a
+ *                   time or an allocation grew by more than
+ *   --threshold=p   percent (10)
+ *
+ * A script has one action per line, with coordinates on the screen:
+ *   pane closest|hull   the pane to play on
+ *   size w h            the size of the pane (800 by 600)
+ *   click x y           a primary click, which plots a point
+ *   drag i x y          the circle of point i dragged to (x, y)
+ *   remove i            a secondary click on the circle of point i
+ *   toggle i            a shift-click on the circle of point i, which
+ *                       moves it to the other set of ClosestPair
+ *   solve               the Solve button
+ *   auto on|off         the Auto-solve check box of ClosestPair, which
+ *                       solves as well
+ *   redblue on|off      the Red/Blue check box of ClosestPair
+ *   moving on|off       the Moving check box of ClosestPair
+ *   metric m            the metric chosen in ClosestPair: EUCLIDEAN,
+ *                       MANHATTAN or CHEBYSHEV
+ *   layers on|off       the Layers check box of ConvexHull
+ *   calipers on|off     the Calipers check box of ConvexHull
+ *   zoom f x y          the scroll wheel, zooming by f around (x, y)
+ *   pan dx dy           a drag with the middle button
+ *   clear               the Clear or Reset button
+ *   frame               the end of a frame
+ * Lines starting with # are comments. The applications record scripts
+ * when started with --record=path.
+ *
+ * Every action does what the handler of the application does for it;
+ * ConvexHull has no drag handler, so there a drag only moves the point.
+ * While the points of ClosestPair are moving, every frame moves them on
+ * by a sixtieth of a second, as a pulse of the animation would; their
+ * velocities are random, so such frames vary more from play to play.
+ *
+ * The panes are not in a scene or a window, and no pulses run: the time
+ * of a frame is the time of its actions and of laying out the pane, the
+ * work of a pulse before rendering, but not the rendering itself.
+ * JavaFX still creates its toolkit and renderer when the first node is
+ * made, so the replay has it use the software pipeline, which needs no
+ * graphics library, unless prism.order is given.
+ */
+public class InteractionReplay {
+
+    /**
+     * An action of a script, parsed before the script is played so that
+     * parsing is not measured.
+     */
+    private static final class Step {
+        final String action;
+        final double[] args;
+        final boolean on;
+
+        Step(String action, double[] args, boolean on) {
+            this.action = action;
+            this.args = args;
+            this.on = on;
+        }
+    }
+
+    /**
+     * The measurements of one play of a script.
+     */
+    private static final class Result {
+        String pane;
+        int points;
+        int numOfSteps;
+        int numOfFrames;
+        int numOfSolves;
+        final long[] stepNanos;
+        final long[] stepBytes;
+        final long[] frameNanos;
+        final long[] solveNanos;
+
+        Result(int size) {
+            stepNanos = new long[size];
+            stepBytes = new long[size];
+            frameNanos = new long[size];
+            solveNanos = new long[size];
+        }
+    }
+
+    // the memory allocated by this thread, where the JVM can tell
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)
+                    ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+
+    public static void main(String[] args) throws IOException {
+        if (System.getProperty("prism.order") == null)
+            System.setProperty("prism.order", "sw");
+
+        Map<String, String> options = new HashMap<>();
+        String path = null;
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                options.put(arg.substring(2, eq < 0 ? arg.length() : eq), eq < 0 ? "" : arg.substring(eq + 1));
+            } else {
+                path = arg;
+            }
+        }
+
+        List<String> script;
+        String name;
+        if (options.containsKey("generate")) {
+            name = "generated " + options.get("generate");
+            script = generate(options.get("generate"),
+                    Integer.parseInt(options.getOrDefault("points", "2000")),
+                    Integer.parseInt(options.getOrDefault("frames", "600")),
+                    Long.parseLong(options.getOrDefault("seed", "1")));
+            if (options.containsKey("save"))
+                Files.write(Paths.get(options.get("save")), script);
+        } else if (path != null) {
+            name = path;
+            script = Files.readAllLines(Paths.get(path));
+        } else {
+            System.err.println("Usage: java point.replay.InteractionReplay script|--generate=closest|hull [options]");
+            return;
+        }
+
+        List<Step> steps = parse(script);
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "1"));
+        for (int i = 0; i < warmup; i++)
+            play(steps);
+        String report = report(name, play(steps));
+        System.out.print(report);
+
+        if (options.containsKey("out"))
+            Files.write(Paths.get(options.get("out")), report.getBytes());
+        if (options.containsKey("compare")) {
+            double threshold = Double.parseDouble(options.getOrDefault("threshold", "10"));
+            String old = new String(Files.readAllBytes(Paths.get(options.get("compare"))));
+            if (!compare(old, report, threshold))
+                System.exit(1);
+        }
+    }
+
+    ///////////////////////////// Scripts /////////////////////////////
+
+    private static List<Step> parse(List<String> script) {
+        List<Step> steps = new ArrayList<>();
+        for (int n = 0; n < script.size(); n++) {
+            String line = script.get(n).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            String[] fields = line.split("\\s+");
+            String action = fields[0];
+            try {
+                switch (action) {
+                    case "pane":
+                        if (!fields[1].equals("closest") && !fields[1].equals("hull"))
+                            throw new IllegalArgumentException("unknown pane " + fields[1]);
+                        steps.add(new Step(action + " " + fields[1], new double[0], false));
+                        break;
+                    case "auto":
+                    case "redblue":
+                    case "moving":
+                    case "layers":
+                    case "calipers":
+                        steps.add(new Step(action, new double[0], fields[1].equals("on")));
+                        break;
+                    case "metric":
+                        steps.add(new Step(action, new double[] {Metric.valueOf(fields[1]).ordinal()}, false));
+                        break;
+                    case "size":
+                    case "click":
+                    case "drag":
+                    case "remove":
+                    case "toggle":
+                    case "solve":
+                    case "zoom":
+                    case "pan":
+                    case "clear":
+                    case "frame":
+                        double[] values = new double[fields.length - 1];
+                        for (int i = 0; i < values.length; i++)
+                            values[i] = Double.parseDouble(fields[i + 1]);
+                        steps.add(new Step(action, values, false));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown action " + action);
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("line " + (n + 1) + ": " + line, e);
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Generates a script for the given pane: the points are plotted by
+     * clicks, 50 to a frame. On ClosestPairPane, auto-solve is then
+     * turned on and one point after another is dragged around, a step in
+     * every frame. ConvexHull has no drag handler, so on ConvexHullPane
+     * every frame pans the view, plots one more point and solves the hull
+     * again, zooming in or out every 30 frames, with the layers shown for
+     * the second half.
+     *
+     * @param pane   "closest" or "hull"
+     * @param points the number of points
+     * @param frames the number of frames after the points are plotted
+     * @param seed   the seed of the random actions
+     * @return the lines of the script
+     */
+    static List<String> generate(String pane, int points, int frames, long seed) {
+        boolean closest = pane.equals("closest");
+        if (!closest && !pane.equals("hull"))
+            throw new IllegalArgumentException("unknown pane " + pane);
+
+        List<String> script = new ArrayList<>();
+        script.add(String.format("# generated: %s, %d points, %d frames, seed %d", pane, points, frames, seed));
+        script.add("pane " + pane);
+        script.add("size 800 600");
+
+        // distinct positions, since a point is not plotted twice
+        Random random = new Random(seed);
+        double[] x = new double[points], y = new double[points];
+        Set<Long> taken = new HashSet<>();
+        for (int i = 0; i < points; i++) {
+            do {
+                x[i] = 10 + random.nextInt(7800) / 10.0;
+                y[i] = 10 + random.nextInt(5800) / 10.0;
+            } while (!taken.add(Double.doubleToLongBits(x[i]) * 31 + Double.doubleToLongBits(y[i])));
+            script.add("click " + x[i] + " " + y[i]);
+            if (i % 50 == 49)
+                script.add("frame");
+        }
+        script.add(closest ? "auto on" : "solve");
+        script.add("frame");
+
+        int dragged = 0;
+        double dx = 0, dy = 0;
+        for (int f = 0; f < frames; f++) {
+            // a new direction every 60 frames, and a new point to drag on ClosestPairPane
+            if (f % 60 == 0) {
+                dragged = random.nextInt(points);
+                double angle = 2 * Math.PI * random.nextDouble();
+                dx = 3 * Math.cos(angle);
+                dy = 3 * Math.sin(angle);
+            }
+
+            if (closest) {
+                x[dragged] = Math.max(10, Math.min(790, x[dragged] + dx));
+                y[dragged] = Math.max(10, Math.min(590, y[dragged] + dy));
+                script.add(String.format("drag %d %.1f %.1f", dragged, x[dragged], y[dragged]));
+            } else {
+                if (f == frames / 2)
+                    script.add("layers on");
+
+                // zooming in and out by turns, so the view stays near the points
+                script.add(String.format("pan %.1f %.1f", dx, dy));
+                if (f % 30 == 15) {
+                    script.add(String.format("zoom %s %.1f %.1f", (f / 30 % 2 == 0) ? "1.25" : "0.8",
+                            10 + random.nextInt(7800) / 10.0, 10 + random.nextInt(5800) / 10.0));
+                }
+                script.add(String.format("click %.1f %.1f",
+                        10 + random.nextInt(7800) / 10.0, 10 + random.nextInt(5800) / 10.0));
+                script.add("solve");
+            }
+            script.add("frame");
+        }
+        return script;
+    }
+
+    ///////////////////////////// Playing /////////////////////////////
+
+    private static Result play(List<Step> steps) {
+        Result result = new Result(steps.size());
+        PlotPane pane = null;
+        double width = 800, height = 600;
+
+        long frameStart = System.nanoTime();
+        for (Step step : steps) {
+            if (step.action.startsWith("pane ")) {
+                result.pane = step.action.substring(5);
+                if (result.pane.equals("closest")) {
+                    pane = new ClosestPairPane();
+                    ((ClosestPairPane) pane).setAnimated(false);
+                } else {
+                    pane = new ConvexHullPane();
+                }
+                pane.resize(width, height);
+                frameStart = System.nanoTime();
+                continue;
+            }
+            if (pane == null)
+                throw new IllegalArgumentException("no pane before " + step.action);
+
+            if (step.action.equals("frame")) {
+                if (pane instanceof ClosestPairPane)
+                    ((ClosestPairPane) pane).advanceMoving(1.0 / 60);
+                pane.layout();
+                long now = System.nanoTime();
+                result.frameNanos[result.numOfFrames++] = now - frameStart;
+                frameStart = now;
+                continue;
+            }
+            if (step.action.equals("size")) {
+                width = step.args[0];
+                height = step.args[1];
+                pane.resize(width, height);
+                continue;
+            }
+
+            long bytes = allocated();
+            long start = System.nanoTime();
+            act(pane, step, result);
+            long end = System.nanoTime();
+            result.stepBytes[result.numOfSteps] = allocated() - bytes;
+            result.stepNanos[result.numOfSteps++] = end - start;
+        }
+
+        if (pane != null)
+            result.points = pane.numOfPoints();
+        return result;
+    }
+
+    // does what the handler of the application does for the action
+    private static void act(PlotPane pane, Step step, Result result) {
+        double[] args = step.args;
+        switch (step.action) {
+            case "click":
+                pane.add(pane.toWorldX(args[0]), pane.toWorldY(args[1]));
+                break;
+            case "drag":
+                Circle c = pane.getCircles().get((int) args[0]);
+                if (args[1] <= pane.getWidth() - 5 && args[1] >= 5)
+                    c.setCenterX(pane.toWorldX(args[1]));
+                if (args[2] <= pane.getHeight() - 5 && args[2] >= 5)
+                    c.setCenterY(pane.toWorldY(args[2]));
+                if (pane instanceof ClosestPairPane) {
+                    if (((ClosestPairPane) pane).isAutoSolve())
+                        solve(pane, result);
+                    else
+                        ((ClosestPairPane) pane).removeClosestLine();
+                }
+                break;
+            case "remove":
+                pane.remove((int) args[0]);
+                break;
+            case "toggle":
+                if (pane instanceof ClosestPairPane) {
+                    ClosestPairPane closest = (ClosestPairPane) pane;
+                    if (closest.isBichromatic())
+                        closest.setBlue((int) args[0], !closest.isBlue((int) args[0]));
+                }
+                break;
+            case "solve":
+                solve(pane, result);
+                break;
+            case "auto":
+                if (pane instanceof ClosestPairPane) {
+                    ((ClosestPairPane) pane).setAutoSolve(step.on);
+                    solve(pane, result);
+                }
+                break;
+            case "redblue":
+                if (pane instanceof ClosestPairPane)
+                    ((ClosestPairPane) pane).setBichromatic(step.on);
+                break;
+            case "moving":
+                if (pane instanceof ClosestPairPane)
+                    ((ClosestPairPane) pane).setMoving(step.on);
+                break;
+            case "metric":
+                if (pane instanceof ClosestPairPane)
+                    ((ClosestPairPane) pane).setMetric(Metric.values()[(int) args[0]]);
+                break;
+            case "layers":
+                if (pane instanceof ConvexHullPane)
+                    ((ConvexHullPane) pane).setLayersShown(step.on);
+                break;
+            case "calipers":
+                if (pane instanceof ConvexHullPane)
+                    ((ConvexHullPane) pane).setCalipersShown(step.on);
+                break;
+            case "zoom":
+                pane.zoom(args[0], args[1], args[2]);
+                break;
+            case "pan":
+                pane.pan(args[0], args[1]);
+                break;
+            default:
+                pane.clear();
+                break;
+        }
+    }
+
+    private static void solve(PlotPane pane, Result result) {
+        long start = System.nanoTime();
+        if (pane instanceof ClosestPairPane)
+            ((ClosestPairPane) pane).solve();
+        else
+            ((ConvexHullPane) pane).solve();
+        result.solveNanos[result.numOfSolves++] = System.nanoTime() - start;
+    }
+
+    private static long allocated() {
+        return (THREADS != null) ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    ///////////////////////////// Reports /////////////////////////////
+
+    // one metric to a line, as name and value, so that reports can be
+    // read back and compared
+    private static String report(String name, Result result) {
+        long[] frames = sorted(result.frameNanos, result.numOfFrames);
+        long[] steps = sorted(result.stepNanos, result.numOfSteps);
+        long[] solves = sorted(result.solveNanos, result.numOfSolves);
+        long[] bytes = sorted(result.stepBytes, result.numOfSteps);
+        long total = 0;
+        for (long b : bytes)
+            total += b;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("# interaction replay of ").append(name).append('\n');
+        sb.append(String.format("pane %s%n", result.pane));
+        sb.append(String.format("points %d%n", result.points));
+        sb.append(String.format("actions %d%n", result.numOfSteps));
+        sb.append(String.format("frames %d%n", result.numOfFrames));
+        sb.append(String.format("frame_p50_ms %.3f%n", percentile(frames, 0.50) / 1e6));
+        sb.append(String.format("frame_p99_ms %.3f%n", percentile(frames, 0.99) / 1e6));
+        sb.append(String.format("frame_max_ms %.3f%n", percentile(frames, 1) / 1e6));
+        sb.append(String.format("action_p50_us %.1f%n", percentile(steps, 0.50) / 1e3));
+        sb.append(String.format("action_p99_us %.1f%n", percentile(steps, 0.99) / 1e3));
+        sb.append(String.format("solves %d%n", result.numOfSolves));
+        sb.append(String.format("solve_p50_ms %.3f%n", percentile(solves, 0.50) / 1e6));
+        sb.append(String.format("solve_p99_ms %.3f%n", percentile(solves, 0.99) / 1e6));
+        sb.append(String.format("alloc_mean_bytes %d%n", (steps.length == 0) ? 0 : total / steps.length));
+        sb.append(String.format("alloc_p99_bytes %d%n", percentile(bytes, 0.99)));
+        return sb.toString();
+    }
+
+    private static long[] sorted(long[] values, int n) {
+        long[] sorted = Arrays.copyOf(values, n);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+    }
+
+    /**
+     * Prints the metrics of two reports side by side, and returns false
+     * if a time or an allocation of the new one is more than threshold
+     * percent above the old one. Reports of different panes, points or
+     * actions are not of the same work, so they are not compared, and
+     * false is returned.
+     *
+     * @param old       the earlier report
+     * @param report    the new report
+     * @param threshold the growth allowed, in percent
+     * @return true if nothing regressed
+     */
+    static boolean compare(String old, String report, double threshold) {
+        for (String key : new String[] {"pane", "points", "actions"}) {
+            String was = field(old, key), now = field(report, key);
+            if (was == null || !was.equals(now)) {
+                System.out.printf("%nnot compared: the reports differ in %s (%s, %s)%n", key, was, now);
+                return false;
+            }
+        }
+
+        Map<String, Double> before = metrics(old);
+        boolean passed = true;
+
+        System.out.printf("%n%-18s %12s %12s %9s%n", "metric", "old", "new", "change");
+        for (Map.Entry<String, Double> entry : metrics(report).entrySet()) {
+            String key = entry.getKey();
+            Double was = before.get(key);
+            if (was == null)
+                continue;
+
+            double now = entry.getValue();
+            double change = (was == 0) ? 0 : 100 * (now - was) / was;
+            boolean measured = key.endsWith("_ms") || key.endsWith("_us") || key.endsWith("_bytes");
+            boolean regressed = measured && change > threshold;
+            passed &= !regressed;
+            System.out.printf("%-18s %12s %12s %8.1f%%%s%n", key, format(was), format(now), change,
+                    regressed ? "  regression" : "");
+        }
+        return passed;
+    }
+
+    // the value of the given line of a report, or null if it has none
+    private static String field(String report, String key) {
+        for (String line : report.split("\n")) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length == 2 && fields[0].equals(key))
+                return fields[1];
+        }
+        return null;
+    }
+
+    // the numeric metrics of a report, in order
+    private static Map<String, Double> metrics(String report) {
+        Map<String, Double> metrics = new java.util.LinkedHashMap<>();
+        for (String line : report.split("\n")) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length != 2 || line.startsWith("#"))
+                continue;
+            try {
+                metrics.put(fields[0], Double.parseDouble(fields[1]));
+            } catch (NumberFormatException e) {
+                // not a number, such as the pane
+            }
+        }
+        return metrics;
+    }
+
+    private static String format(double v) {
+        return (v == Math.rint(v)) ? Long.toString((long) v) : String.format("%.3f", v);
+    }
+}
@@ -0,0 +1,157 @@
+package point.replay;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import point.PlotPane;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records what the user does on a pane as a script that
+ * InteractionReplay plays back: one action per line, in screen
+ * coordinates, with a frame line after every pulse in which something
+ * was done, so the replay groups the actions into the same frames.
+ * While the pane animates on its own, every pulse is a frame. The
+ * timer that writes the frame lines only runs while there is something
+ * to write, so an idle application does not get a pulse 60 times a
+ * second for the recorder.
+ * Zooming and panning are handled by the pane, so they are recorded
+ * here; the application records the rest of what its handlers do.
+ *
+ * @see InteractionReplay
+ */
+public final class ScriptRecorder implements Closeable {
+
+    private final BufferedWriter out;
+    private final PlotPane pane;
+    private final AnimationTimer frames;
+
+    // the size of the pane written last, whether anything was recorded
+    // since the last frame line, and whether the pane animates
+    private double width = -1;
+    private double height = -1;
+    private boolean pending;
+    private boolean animating;
+
+    // where the middle button was last pressed or dragged to
+    private double panX;
+    private double panY;
+
+    /**
+     * Starts recording the actions on the given pane to a script at the
+     * given path.
+     *
+     * @param path the path of the script
+     * @param kind the kind of the pane, "closest" or "hull"
+     * @param pane the pane
+     * @throws IOException if the script cannot be written
+     */
+    public ScriptRecorder(Path path, String kind, PlotPane pane) throws IOException {
+        this.out = Files.newBufferedWriter(path);
+        this.pane = pane;
+        line("# recorded by ScriptRecorder");
+        line("pane " + kind);
+
+        frames = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (pending || animating) {
+                    line("frame");
+                    pending = false;
+                }
+                if (!animating)
+                    stop();
+            }
+        };
+
+        // the same zooming and panning as the pane does
+        pane.addEventHandler(ScrollEvent.SCROLL, event -> {
+            if (event.getDeltaY() != 0)
+                record("zoom", event.getDeltaY() > 0 ? 1.25 : 0.8, event.getX(), event.getY());
+        });
+        pane.addEventHandler(MouseEvent.MOUSE_PRESSED, event -> {
+            if (event.getButton() == MouseButton.MIDDLE) {
+                panX = event.getX();
+                panY = event.getY();
+            }
+        });
+        pane.addEventHandler(MouseEvent.MOUSE_DRAGGED, event -> {
+            if (event.isMiddleButtonDown()) {
+                record("pan", event.getX() - panX, event.getY() - panY);
+                panX = event.getX();
+                panY = event.getY();
+            }
+        });
+    }
+
+    /**
+     * Records an action with the given arguments, such as
+     * record("click", x, y).
+     *
+     * @param action the action
+     * @param args   the arguments of the action
+     */
+    public void record(String action, double... args) {
+        // the size first, as the coordinates are on the screen
+        if (pane.getWidth() != width || pane.getHeight() != height) {
+            width = pane.getWidth();
+            height = pane.getHeight();
+            line("size " + number(width) + " " + number(height));
+        }
+
+        StringBuilder sb = new StringBuilder(action);
+        for (double arg : args)
+            sb.append(' ').append(number(arg));
+        line(sb.toString());
+        pending = true;
+        frames.start();
+    }
+
+    /**
+     * Tells whether the pane animates on its own, as ClosestPair does
+     * when its points are moving, so that a frame line is written for
+     * every pulse, even one in which nothing was done, and the replay
+     * animates the pane for as many frames.
+     *
+     * @param animating true while the pane animates
+     */
+    public void setAnimating(boolean animating) {
+        this.animating = animating;
+        if (animating)
+            frames.start();
+    }
+
+    /**
+     * Stops recording and closes the script.
+     *
+     * @throws IOException if the script cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        frames.stop();
+        if (pending)
+            line("frame");
+        out.close();
+    }
+
+    // whole numbers, such as indices, are written without a fraction
+    private static String number(double v) {
+        return (v == Math.rint(v) && Math.abs(v) < 1e15) ? Long.toString((long) v) : Double.toString(v);
+    }
+
+    private void line(String line) {
+        try {
+            out.write(line);
+            out.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package point.service;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of requests and reports their percentiles and
+ * the throughput. Only the most recent latencies are kept, in a ring,
+ * so the percentiles follow the current load. The throughput is given
+ * over a window that belongs to whoever asks for the report, so that a
+ * periodic printout and the STATS requests of clients do not cut each
+ * other's windows short.
+ */
+final class LatencyRecorder {
+
+    private final long[] ring = new long[1 << 16];
+    private long completed;
+    private long rejected;
+
+    // when the recording started, which is where every window starts
+    private final long started = System.nanoTime();
+
+    /**
+     * The count and the time of the last report through this window,
+     * for the throughput since then.
+     */
+    static final class Window {
+        private long completed;
+        private long time;
+    }
+
+    /**
+     * Returns a new window, whose first report gives the throughput
+     * since the recording started.
+     *
+     * @return the window
+     */
+    Window window() {
+        Window window = new Window();
+        window.time = started;
+        return window;
+    }
+
+    synchronized void record(long nanos) {
+        ring[(int) (completed++ % ring.length)] = nanos;
+    }
+
+    synchronized void reject() {
+        rejected++;
+    }
+
+    /**
+     * Returns a line with the counts, the 50th and 99th percentile
+     * latencies and the throughput since the last report through the
+     * given window.
+     *
+     * @param window the window of the throughput, which starts again now
+     * @return the report
+     */
+    synchronized String report(Window window) {
+        long now = System.nanoTime();
+        double throughput = (completed - window.completed) / ((now - window.time) / 1e9);
+        window.completed = completed;
+        window.time = now;
+
+        long[] latencies = Arrays.copyOf(ring, (int) Math.min(completed, ring.length));
+        Arrays.sort(latencies);
+        return String.format("completed %d, rejected %d, p50 %.3f ms, p99 %.3f ms, %.0f req/s",
+                completed, rejected, percentile(latencies, 0.50) / 1e6,
+                percentile(latencies, 0.99) / 1e6, throughput);
+    }
+
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+    }
+}
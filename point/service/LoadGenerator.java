@@ -0,0 +1,150 @@
+package point.service;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client that loads a SolverServer with many small requests over
+ * several connections and reports the latencies it sees, the number of
+ * requests rejected and the throughput, followed by the report of the
+ * server itself. If no port is given, a server is started in this JVM,
+ * so the whole test runs on one box.
+ *
+ * Usage: java point.service.LoadGenerator [port] [connections] [requests] [points] [window]
+ *
+ * Every connection sends its requests, with up to window of them
+ * waiting for an answer at a time; half of them are closest pair
+ * requests and half convex hull requests of the given number of points.
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 0;
+        int connections = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+        int requests = (args.length > 2) ? Integer.parseInt(args[2]) : 20_000;
+        int points = (args.length > 3) ? Integer.parseInt(args[3]) : 100;
+        int window = (args.length > 4) ? Integer.parseInt(args[4]) : 32;
+
+        SolverServer local = null;
+        if (port == 0) {
+            local = new SolverServer(0, Runtime.getRuntime().availableProcessors(), 256,
+                    4 * Protocol.MAX_POINTS, 64, 200);
+            local.start();
+            port = local.getPort();
+        }
+
+        long[] latencies = new long[connections * requests];
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        long start = System.nanoTime();
+        Thread[] threads = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            int serverPort = port;
+            threads[c] = new Thread(() -> {
+                try {
+                    run(serverPort, connection, requests, points, window, latencies, rejected, failed);
+                } catch (IOException | InterruptedException e) {
+                    System.err.println("Cannot run connection " + connection + ": " + e.getMessage());
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        long elapsed = System.nanoTime() - start;
+
+        long[] answered = Arrays.stream(latencies).filter(l -> l > 0).sorted().toArray();
+        System.out.printf("%d requests of %d points over %d connections%n", latencies.length, points, connections);
+        System.out.printf("answered %d, rejected %d, failed %d%n", answered.length, rejected.get(), failed.get());
+        System.out.printf("client p50 %.3f ms, p99 %.3f ms, %.0f req/s%n",
+                LatencyRecorder.percentile(answered, 0.50) / 1e6,
+                LatencyRecorder.percentile(answered, 0.99) / 1e6,
+                answered.length / (elapsed / 1e9));
+        System.out.println("server " + stats(port));
+
+        if (local != null)
+            local.stop();
+    }
+
+    // sends the requests of one connection and reads their responses
+    private static void run(int port, int connection, int requests, int points, int window,
+                            long[] latencies, AtomicLong rejected, AtomicLong failed)
+            throws IOException, InterruptedException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Semaphore inFlight = new Semaphore(window);
+            long[] sent = new long[requests];
+
+            Thread reader = new Thread(() -> {
+                try {
+                    for (int k = 0; k < requests; k++) {
+                        int id = in.readInt();
+                        byte status = in.readByte();
+                        if (status == Protocol.OK) {
+                            if (id % 2 == 0) {
+                                in.readInt();
+                                in.readInt();
+                            } else {
+                                in.skipBytes(4 * in.readInt());
+                            }
+                            latencies[connection * requests + id] = System.nanoTime() - sent[id];
+                        } else {
+                            in.readUTF();
+                            (status == Protocol.REJECTED ? rejected : failed).incrementAndGet();
+                        }
+                        inFlight.release();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Cannot read the responses of connection " + connection + ": " + e.getMessage());
+                }
+            });
+            reader.start();
+
+            // a few sets of points, written once and sent over and over
+            Random random = new Random(connection);
+            byte[][] sets = new byte[16][16 * points];
+            for (byte[] set : sets) {
+                DoubleBuffer coordinates = ByteBuffer.wrap(set).asDoubleBuffer();
+                while (coordinates.hasRemaining())
+                    coordinates.put(random.nextDouble() * 1000);
+            }
+
+            for (int id = 0; id < requests; id++) {
+                inFlight.acquire();
+                sent[id] = System.nanoTime();
+                out.writeInt(id);
+                out.writeByte(id % 2 == 0 ? Protocol.CLOSEST_PAIR : Protocol.CONVEX_HULL);
+                out.writeInt(points);
+                out.write(sets[id % sets.length]);
+                out.flush();
+            }
+            reader.join();
+        }
+    }
+
+    // asks the server for its report
+    private static String stats(int port) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeInt(0);
+            out.writeByte(Protocol.STATS);
+            out.writeInt(0);
+            out.flush();
+
+            in.readInt();
+            in.readByte();
+            return in.readUTF();
+        }
+    }
+}
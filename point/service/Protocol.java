@@ -0,0 +1,33 @@
+package point.service;
+
+/**
+ * The binary format of the solver service. All numbers are big-endian,
+ * as written by DataOutputStream.
+ *
+ * A request is an int id chosen by the client, a byte operation and an
+ * int n followed by n pairs of double coordinates. A response starts
+ * with the id of its request and a byte status. If the status is OK,
+ * the result follows: two int indices for CLOSEST_PAIR, an int h and h
+ * int indices for CONVEX_HULL (ending with the first again), and a
+ * UTF string for STATS. Otherwise a UTF message follows.
+ *
+ * Requests on one connection may be answered out of order.
+ */
+final class Protocol {
+
+    // operations
+    static final byte CLOSEST_PAIR = 1;
+    static final byte CONVEX_HULL = 2;
+    static final byte STATS = 3;
+
+    // statuses
+    static final byte OK = 0;
+    static final byte REJECTED = 1;
+    static final byte ERROR = 2;
+
+    // the largest number of points in a request
+    static final int MAX_POINTS = 1 << 20;
+
+    private Protocol() {
+    }
+}
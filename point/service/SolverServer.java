@@ -0,0 +1,402 @@
+package point.service;
+
+import point.closestpair.ClosestPairFinder;
+import point.convexhull.MonotoneChain;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * A local server that solves closest pair and convex hull requests for
+ * other programs, without JavaFX. The format of the requests is given
+ * in Protocol.
+ *
+ * Every connection has a thread that reads its requests into one
+ * queue, which is bounded both by the number of requests and by the
+ * number of points that may wait. A batching thread takes the requests off the queue in
+ * batches of up to maxBatch, waiting at most lingerMicros for a batch
+ * to fill, and hands each batch to the pool of solver threads. When all
+ * solver threads are busy the batching thread waits, the queue fills
+ * up, and the requests that do not fit are answered REJECTED right
+ * away instead of waiting without bound. Room in the queue is taken
+ * from the header of a request, before its points are read, so the
+ * points of a rejected request are skipped rather than allocated.
+ *
+ * Every connection also has a writer thread. Solver threads queue
+ * their responses to it rather than writing to the socket themselves,
+ * so a slow client never holds up a solver; a client that lets
+ * RESPONSES responses pile up unread is disconnected.
+ *
+ * The server prints its latencies and throughput every few seconds,
+ * and answers them to a STATS request, each over its own window.
+ *
+ * Usage: java point.service.SolverServer [port] [threads] [queue] [batch] [linger us] [queue points]
+ */
+public class SolverServer {
+
+    // the responses a connection may have waiting to be written
+    private static final int RESPONSES = 4096;
+
+    // queued after the last response of a connection
+    private static final byte[] CLOSED = new byte[0];
+
+    private final ServerSocket server;
+    private final int maxBatch;
+    private final long lingerNanos;
+
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final Semaphore requests;
+    private final Semaphore points;
+    private final ExecutorService solvers;
+    private final Semaphore idle;
+    private final ExecutorService connections = Executors.newCachedThreadPool(daemon("connection"));
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final LatencyRecorder.Window printed = latencies.window();
+
+    private volatile boolean running = true;
+
+    /**
+     * A request waiting to be solved.
+     */
+    private static final class Job {
+        final Connection connection;
+        final int id;
+        final byte op;
+        final double[] x;
+        final double[] y;
+        final long received = System.nanoTime();
+
+        Job(Connection connection, int id, byte op, double[] x, double[] y) {
+            this.connection = connection;
+            this.id = id;
+            this.op = op;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * Constructs a server on the given port of the loopback address.
+     *
+     * @param port          the port, or 0 for any free port
+     * @param threads       the number of solver threads
+     * @param capacity      the number of requests that may wait
+     * @param maxPoints     the number of points that may wait, at least
+     *                      the largest number of points in a request
+     * @param maxBatch      the largest number of requests in a batch
+     * @param lingerMicros  how long to wait for a batch to fill
+     * @throws IOException if the port cannot be opened
+     */
+    public SolverServer(int port, int threads, int capacity, int maxPoints, int maxBatch, long lingerMicros)
+            throws IOException {
+        if (threads < 1 || capacity < 1 || maxBatch < 1 || lingerMicros < 0)
+            throw new IllegalArgumentException("threads, capacity and maxBatch must be positive");
+        if (maxPoints < Protocol.MAX_POINTS)
+            throw new IllegalArgumentException("maxPoints must be at least " + Protocol.MAX_POINTS);
+
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.requests = new Semaphore(capacity);
+        this.points = new Semaphore(maxPoints);
+        this.solvers = Executors.newFixedThreadPool(threads, daemon("solver"));
+        this.idle = new Semaphore(threads);
+    }
+
+    /**
+     * Returns the port that this server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Starts accepting connections and solving requests in the background.
+     */
+    public void start() {
+        Thread acceptor = daemon("acceptor").newThread(this::accept);
+        Thread batcher = daemon("batcher").newThread(this::batch);
+        acceptor.start();
+        batcher.start();
+    }
+
+    /**
+     * Stops this server. Requests that are waiting are dropped.
+     */
+    public void stop() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        connections.shutdownNow();
+        solvers.shutdownNow();
+    }
+
+    /**
+     * Returns the report of the latencies and the throughput since the
+     * last call of this method. STATS requests do not change it.
+     *
+     * @return the report
+     */
+    public String report() {
+        return latencies.report(printed);
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Connection connection = new Connection(server.accept());
+                connections.execute(connection::read);
+                connections.execute(connection::write);
+            } catch (IOException e) {
+                if (running)
+                    System.err.println("Cannot accept a connection: " + e.getMessage());
+            }
+        }
+    }
+
+    // takes batches off the queue and hands them to idle solvers
+    private void batch() {
+        List<Job> batch = new ArrayList<>();
+        try {
+            while (running) {
+                batch.add(queue.take());
+
+                // give the batch a short time to fill up
+                long deadline = System.nanoTime() + lingerNanos;
+                queue.drainTo(batch, maxBatch - batch.size());
+                while (batch.size() < maxBatch) {
+                    Job next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+
+                // the batch no longer waits in the queue
+                for (Job job : batch) {
+                    requests.release();
+                    points.release(job.x.length);
+                }
+
+                idle.acquire();
+                List<Job> jobs = new ArrayList<>(batch);
+                batch.clear();
+                solvers.execute(() -> {
+                    try {
+                        for (Job job : jobs)
+                            solve(job);
+                    } finally {
+                        idle.release();
+                    }
+                });
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // stopped
+        }
+    }
+
+    private void solve(Job job) {
+        try {
+            int[] result;
+            if (job.op == Protocol.CLOSEST_PAIR) {
+                result = ClosestPairFinder.find(job.x, job.y);
+            } else {
+                int[] hull = MonotoneChain.hull(job.x, job.y);
+                result = new int[hull.length + 1];
+                result[0] = hull.length;
+                System.arraycopy(hull, 0, result, 1, hull.length);
+            }
+
+            job.connection.reply(job.id, result);
+            latencies.record(System.nanoTime() - job.received);
+        } catch (RuntimeException e) {
+            job.connection.fail(job.id, Protocol.ERROR, e.toString());
+        }
+    }
+
+    /**
+     * A connection of a client. One thread reads its requests, and
+     * another writes the responses that any thread queues for it.
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final BlockingQueue<byte[]> responses = new ArrayBlockingQueue<>(RESPONSES);
+        private final LatencyRecorder.Window window = latencies.window();
+
+        // whether the reader has stopped, after which no more responses come
+        private volatile boolean done;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void read() {
+            try {
+                while (running) {
+                    int id = in.readInt();
+                    byte op = in.readByte();
+                    int n = in.readInt();
+                    if (n < 0 || n > Protocol.MAX_POINTS) {
+                        fail(id, Protocol.ERROR, "too many points: " + n);
+                        return; // the rest of the request cannot be skipped safely
+                    }
+
+                    // answer the requests that need no points before reading them
+                    if (op == Protocol.STATS) {
+                        in.skipNBytes(16L * n);
+                        stats(id, latencies.report(window));
+                        continue;
+                    }
+                    if (op != Protocol.CLOSEST_PAIR && op != Protocol.CONVEX_HULL) {
+                        in.skipNBytes(16L * n);
+                        fail(id, Protocol.ERROR, "unknown operation: " + op);
+                        continue;
+                    }
+                    if (!reserve(n)) {
+                        // back-pressure: say so now rather than queueing without bound
+                        in.skipNBytes(16L * n);
+                        latencies.reject();
+                        fail(id, Protocol.REJECTED, "overloaded");
+                        continue;
+                    }
+
+                    // read the coordinates in one block rather than a double at a time
+                    byte[] bytes = new byte[16 * n];
+                    in.readFully(bytes);
+                    DoubleBuffer coordinates = ByteBuffer.wrap(bytes).asDoubleBuffer();
+                    double[] x = new double[n];
+                    double[] y = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        x[i] = coordinates.get();
+                        y[i] = coordinates.get();
+                    }
+                    queue.add(new Job(this, id, op, x, y));
+                }
+            } catch (EOFException | SocketException e) {
+                // the client closed the connection
+            } catch (IOException e) {
+                System.err.println("Cannot read a request: " + e.getMessage());
+            } finally {
+                // the writer closes the socket after the responses queued so far
+                done = true;
+                responses.offer(CLOSED);
+            }
+        }
+
+        // writes the queued responses in order, flushing whenever none are left
+        void write() {
+            try (socket) {
+                while (true) {
+                    byte[] response = responses.poll(1, TimeUnit.SECONDS);
+                    if (response == CLOSED || (response == null && done))
+                        break;
+                    if (response != null) {
+                        out.write(response);
+                        if (responses.isEmpty())
+                            out.flush();
+                    }
+                }
+                out.flush();
+            } catch (IOException | InterruptedException e) {
+                // the client is gone, or the server stopped
+            }
+        }
+
+        void reply(int id, int[] result) {
+            ByteBuffer response = ByteBuffer.allocate(5 + 4 * result.length);
+            response.putInt(id).put(Protocol.OK);
+            for (int value : result)
+                response.putInt(value);
+            send(response.array());
+        }
+
+        void stats(int id, String report) {
+            send(message(id, Protocol.OK, report));
+        }
+
+        void fail(int id, byte status, String message) {
+            send(message(id, status, String.valueOf(message)));
+        }
+
+        private byte[] message(int id, byte status, String text) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            try (DataOutputStream data = new DataOutputStream(bytes)) {
+                data.writeInt(id);
+                data.writeByte(status);
+                data.writeUTF(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private void send(byte[] response) {
+            // a client that does not read its responses is dropped
+            if (!responses.offer(response))
+                close();
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    // takes room in the queue for a request of n points, if there is any
+    private boolean reserve(int n) {
+        if (!requests.tryAcquire())
+            return false;
+        if (!points.tryAcquire(n)) {
+            requests.release();
+            return false;
+        }
+        return true;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 7070;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int capacity = (args.length > 2) ? Integer.parseInt(args[2]) : 1024;
+        int maxBatch = (args.length > 3) ? Integer.parseInt(args[3]) : 64;
+        long linger = (args.length > 4) ? Long.parseLong(args[4]) : 200;
+        int maxPoints = (args.length > 5) ? Integer.parseInt(args[5]) : 4 * Protocol.MAX_POINTS;
+
+        SolverServer server = new SolverServer(port, threads, capacity, maxPoints, maxBatch, linger);
+        server.start();
+        System.out.printf("listening on %d with %d solvers, queue %d of %d points, batches of %d, linger %d us%n",
+                server.getPort(), threads, capacity, maxPoints, maxBatch, linger);
+
+        while (true) {
+            Thread.sleep(5000);
+            System.out.println(server.report());
+        }
+    }
+}
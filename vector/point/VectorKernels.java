@@ -0,0 +1,110 @@
+package point;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels of PointKernels written with the Vector API. Each loop
+ * handles a full vector of points per iteration, keeping a separate
+ * best candidate in every lane, and combines the lanes at the end.
+ * Indices are carried in double lanes, which hold them exactly.
+ *
+ * This class needs the jdk.incubator.vector module to compile and
+ * run, so it is kept out of the point/ source root and compiled on its
+ * own, with --add-modules jdk.incubator.vector, onto the same class
+ * path. PointKernels only loads it when the module is present.
+ *
+ * @see PointKernels
+ */
+final class VectorKernels extends PointKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    // the lane numbers 0, 1, 2, ...
+    private static final DoubleVector IOTA = DoubleVector.zero(SPECIES).addIndex(1);
+
+    @Override
+    public String name() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    @Override
+    public int nearest(double[] x, double[] y, int from, int to, double px, double py) {
+        int i = from;
+        int nearest = -1;
+        double best = Double.POSITIVE_INFINITY;
+
+        int bound = from + SPECIES.loopBound(to - from);
+        if (i < bound) {
+            DoubleVector bestD = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+            DoubleVector bestI = DoubleVector.broadcast(SPECIES, -1);
+            for (; i < bound; i += SPECIES.length()) {
+                DoubleVector dx = DoubleVector.fromArray(SPECIES, x, i).sub(px);
+                DoubleVector dy = DoubleVector.fromArray(SPECIES, y, i).sub(py);
+                DoubleVector d = dx.mul(dx).add(dy.mul(dy));
+
+                VectorMask<Double> closer = d.lt(bestD);
+                bestD = bestD.blend(d, closer);
+                bestI = bestI.blend(IOTA.add(i), closer);
+            }
+
+            // the lane with the smallest distance, and the smallest index on ties
+            best = bestD.reduceLanes(VectorOperators.MIN);
+            nearest = (int) bestI.reduceLanes(VectorOperators.MIN, bestD.eq(best));
+        }
+
+        for (; i < to; i++) {
+            double dx = x[i] - px;
+            double dy = y[i] - py;
+            double d = dx * dx + dy * dy;
+            if (d < best) {
+                best = d;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    @Override
+    public int nextHullVertex(double[] x, double[] y, int n, int p1, int start) {
+        double x1 = x[p1], y1 = y[p1];
+        int p = 0;
+        int p2 = start;
+
+        int bound = SPECIES.loopBound(n);
+        if (bound > 0) {
+            // the candidate of every lane, relative to p1
+            DoubleVector ax = DoubleVector.broadcast(SPECIES, x[start] - x1);
+            DoubleVector ay = DoubleVector.broadcast(SPECIES, y[start] - y1);
+            DoubleVector ai = DoubleVector.broadcast(SPECIES, start);
+            for (; p < bound; p += SPECIES.length()) {
+                DoubleVector bx = DoubleVector.fromArray(SPECIES, x, p).sub(x1);
+                DoubleVector by = DoubleVector.fromArray(SPECIES, y, p).sub(y1);
+
+                // the same rule as PointKernels.turnsLeft, lane by lane
+                DoubleVector direction = ax.mul(by).sub(bx.mul(ay));
+                VectorMask<Double> left = direction.compare(VectorOperators.GT, 0)
+                        .or(direction.compare(VectorOperators.EQ, 0)
+                                .and(bx.mul(bx).add(by.mul(by)).compare(VectorOperators.GT, ax.mul(ax).add(ay.mul(ay)))));
+
+                ax = ax.blend(bx, left);
+                ay = ay.blend(by, left);
+                ai = ai.blend(IOTA.add(p), left);
+            }
+
+            // combine the candidates of the lanes
+            for (int lane = 0; lane < SPECIES.length(); lane++) {
+                int c = (int) ai.lane(lane);
+                if (turnsLeft(x[p2] - x1, y[p2] - y1, x[c] - x1, y[c] - y1))
+                    p2 = c;
+            }
+        }
+
+        for (; p < n; p++)
+            if (turnsLeft(x[p2] - x1, y[p2] - y1, x[p] - x1, y[p] - y1))
+                p2 = p;
+        return p2;
+    }
+}